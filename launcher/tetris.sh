@@ -0,0 +1,31 @@
+#!/bin/sh
+# Fast-startup launcher of Tetris, arguments are passed to TetrisStartGame (e.g. "record 1 1000 game.rep")
+# sources are compiled into out/launcher/tetris.jar when they change, then class data sharing archive
+# (AppCDS) is recorded once during a typical session ("cds-training" mode) and every start maps it,
+# so classes are not parsed and verified again by every short-lived process
+# "launcher/tetris.sh startup-bench [runs]" compares startup with and without the archive
+
+ROOT=$(cd "$(dirname "$0")/.." && pwd)
+BUILD="$ROOT/out/launcher"
+JAR="$BUILD/tetris.jar"
+ARCHIVE="$BUILD/tetris.jsa"
+BIN="${JAVA_HOME:+$JAVA_HOME/bin/}"
+
+if [ ! -f "$JAR" ] || [ -n "$(find "$ROOT/src" -name '*.java' -newer "$JAR")" ]; then
+    rm -rf "$BUILD/classes" "$ARCHIVE"
+    mkdir -p "$BUILD/classes"
+    "${BIN}javac" -d "$BUILD/classes" "$ROOT"/src/*.java || exit 1
+    "${BIN}jar" --create --file "$JAR" --main-class TetrisStartGame -C "$BUILD/classes" . || exit 1
+fi
+
+if [ ! -f "$ARCHIVE" ]; then
+    "${BIN}java" -XX:ArchiveClassesAtExit="$ARCHIVE" -cp "$JAR" TetrisStartGame cds-training > /dev/null 2>&1
+fi
+
+LAUNCH_TIME=$(date +%s%N)
+case "$LAUNCH_TIME" in
+    *[!0-9]*) LAUNCH_TIME= ;;
+esac
+
+exec "${BIN}java" -XX:SharedArchiveFile="$ARCHIVE" -Dtetris.cdsArchive="$ARCHIVE" \
+    ${LAUNCH_TIME:+-Dtetris.launchTime=$LAUNCH_TIME} -cp "$JAR" TetrisStartGame "$@"
@@ -0,0 +1,186 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+
+/**
+ * Check that game logic and board painting do not allocate in steady state,
+ * every cycle restores prepared game (bottom line full), moves and rotates piece,
+ * drops it and lets logic ticks remove full line, heap allocated by this thread is measured
+ * after warm-up, so JIT compiled code is checked, board is painted both through tile atlas
+ * and the way game panel paints it (with performance overlay), with and without running animations
+ */
+public class AllocationCheck
+{
+    /** Number of cycles before measurement, so that hot methods are compiled */
+    private static final int WARM_UP_CYCLES = 20_000;
+    /** Number of measured cycles */
+    private static final int MEASURED_CYCLES = 5_000;
+    /** Square size (in pixels) used in paint check */
+    private static final int SQUARE_SIZE = 20;
+    /** Time after which all animations of the game are finished (in nanoseconds) */
+    private static final long ANIMATIONS_OVER_NANOS = 1_000_000_000L;
+
+    /** Allocation counter of current thread */
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    /** Id of thread which runs the checks */
+    private final long threadId = Thread.currentThread().getId();
+    /** Checked game */
+    private final Controller game;
+    /** Performance overlay drawn over board in panel paint check */
+    private final PerformanceOverlay overlay = new PerformanceOverlay();
+    /** Prepared game snapshot */
+    private final ByteBuffer snapshot;
+
+    /**
+     * Constructor - prepares game with full bottom line
+     * @param boardWidth board width (in squares)
+     * @param boardHeight board height (in squares)
+     */
+    public AllocationCheck(int boardWidth, int boardHeight)
+    {
+        game = new Controller(new Model(1), boardWidth, boardHeight);
+        game.start();
+        snapshot = ByteBuffer.allocate(game.getStateSize());
+        game.writeState(snapshot);
+
+        Model.Shape[] board = new Model.Shape[boardWidth * boardHeight];
+        for (int i = 0; i < board.length; ++i)
+        {
+            board[i] = i < boardWidth ? Model.Shape.ZShape : Model.Shape.EmptyShape;
+        }
+        snapshot.position(snapshot.capacity() - BoardPacker.packedSize(board.length));
+        BoardPacker.pack(board, snapshot);
+    }
+
+    /**
+     * Runs checks, exit code is 1 if any of them allocated
+     * @param boardWidth board width (in squares)
+     * @param boardHeight board height (in squares)
+     */
+    public static void run(int boardWidth, int boardHeight)
+    {
+        System.setProperty("java.awt.headless", "true");
+        AllocationCheck check = new AllocationCheck(boardWidth, boardHeight);
+        boolean logicOk = check.report("game logic", check.measureLogic());
+        boolean atlasOk = check.report("atlas", check.measurePaint(true));
+        boolean panelOk = check.report("panel", check.measurePaint(false));
+        if (!logicOk || !atlasOk || !panelOk)
+        {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Measures game logic - moves, rotation, drop, logic ticks and line removal
+     * @return allocated bytes per cycle
+     */
+    public double measureLogic()
+    {
+        for (int i = 0; i < WARM_UP_CYCLES; ++i)
+        {
+            playCycle();
+        }
+        long before = allocatedBytes();
+        for (int i = 0; i < MEASURED_CYCLES; ++i)
+        {
+            playCycle();
+        }
+        return (double) (allocatedBytes() - before) / MEASURED_CYCLES;
+    }
+
+    /**
+     * Measures painting of board into offscreen image
+     * @param useAtlas true if board is painted through tile atlas, false if it's painted like in game panel
+     * @return allocated bytes per frame
+     */
+    public double measurePaint(boolean useAtlas)
+    {
+        TileAtlas atlas = new TileAtlas(SQUARE_SIZE, SQUARE_SIZE);
+        BufferedImage frame = new BufferedImage(game.getBoardWidth() * SQUARE_SIZE,
+                game.getBoardHeight() * SQUARE_SIZE, BufferedImage.TYPE_INT_RGB);
+        Graphics g = frame.getGraphics();
+
+        for (int i = 0; i < WARM_UP_CYCLES; ++i)
+        {
+            paintCycle(g, useAtlas ? atlas : null);
+        }
+        long before = allocatedBytes();
+        for (int i = 0; i < MEASURED_CYCLES; ++i)
+        {
+            paintCycle(g, useAtlas ? atlas : null);
+        }
+        double result = (double) (allocatedBytes() - before) / MEASURED_CYCLES;
+        g.dispose();
+        return result;
+    }
+
+    /**
+     * One cycle of game logic
+     */
+    private void playCycle()
+    {
+        snapshot.position(0);
+        game.readState(snapshot);
+        game.moveLeft();
+        game.rotateRight();
+        game.moveRight();
+        game.rotateRight();
+        game.oneLineDown();
+        game.dropDown();
+        game.gameAction();
+        game.gameAction();
+        game.gameAction();
+    }
+
+    /**
+     * One painted frame, game is moved so that different pieces are drawn,
+     * panel paint draws the board during animations and after them
+     * @param g Graphics object of offscreen image
+     * @param atlas tile atlas, null if board is painted like in game panel
+     */
+    private void paintCycle(Graphics g, TileAtlas atlas)
+    {
+        game.gameAction();
+        if (!game.isStarted())
+        {
+            snapshot.position(0);
+            game.readState(snapshot);
+        }
+        if (atlas != null)
+        {
+            game.paint(g, atlas, 0, 0);
+            return;
+        }
+        double width = game.getBoardWidth() * SQUARE_SIZE;
+        double height = game.getBoardHeight() * SQUARE_SIZE;
+        long now = System.nanoTime();
+        game.paint(g, width, height, now);
+        game.paint(g, width, height, now + ANIMATIONS_OVER_NANOS);
+        game.getMetrics().framePainted(now, now);
+        overlay.paint(g, game.getMetrics());
+    }
+
+    /**
+     * Heap allocated by current thread so far
+     * @return number of bytes
+     */
+    private long allocatedBytes()
+    {
+        return threads.getThreadAllocatedBytes(threadId);
+    }
+
+    /**
+     * Prints result of one check
+     * @param name check name
+     * @param bytesPerCycle allocated bytes per cycle
+     * @return true if nothing was allocated
+     */
+    private boolean report(String name, double bytesPerCycle)
+    {
+        boolean ok = bytesPerCycle == 0;
+        System.out.printf("%-10s %8.2f B/cycle  %s%n", name, bytesPerCycle, ok ? "OK" : "ALLOCATES");
+        return ok;
+    }
+}
@@ -0,0 +1,49 @@
+/**
+ * Autoplay - plays solution found by PuzzleSolver in a game,
+ * after every tick current piece is placed as soon as it's created
+ * @see Controller#setAutoplay
+ */
+public class Autoplay
+{
+    /** Played solution */
+    private final PuzzleSolver.Solution solution;
+    /** Number of next placement */
+    private int next = 0;
+
+    /**
+     * Constructor
+     * @param solution played solution
+     */
+    public Autoplay(PuzzleSolver.Solution solution)
+    {
+        this.solution = solution;
+    }
+
+    /**
+     * Called by controller after every tick
+     * @param game game
+     */
+    public void tick(Controller game)
+    {
+        if (next >= solution.size() || !game.isStarted() || game.isPaused() || game.isFallingFinished())
+        {
+            return;
+        }
+        if (!game.place(solution.getRotations(next), solution.getColumn(next)))
+        {
+            System.err.println("Autoplay: piece " + (next + 1) + " cannot be placed as in solution");
+            next = solution.size();
+            return;
+        }
+        ++next;
+    }
+
+    /**
+     * Check if all placements were played
+     * @return true if solution is finished
+     */
+    public boolean isFinished()
+    {
+        return next >= solution.size();
+    }
+}
@@ -0,0 +1,235 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32;
+
+/**
+ * Crash-safe autosave of game snapshots (see Controller#writeState) into memory-mapped file
+ * file has two slots: snapshot is written into older slot with its checksum, and only then slot's
+ * sequence number is written, so newest slot with valid checksum is always a complete snapshot
+ * game thread only copies snapshot into buffer, writing and flushing is done by autosave thread
+ */
+public class Autosave implements Closeable
+{
+    /** Default number of ticks between snapshots */
+    public static final int DEFAULT_INTERVAL_TICKS = 5;
+    /** Slot size (in bytes) */
+    private static final int SLOT_SIZE = 512;
+    /** Slot header size: sequence number (long), snapshot length (int), checksum (int) */
+    private static final int HEADER_SIZE = 16;
+
+    /** File channel */
+    private final FileChannel channel;
+    /** Memory-mapped file with two slots */
+    private final MappedByteBuffer map;
+    /** Number of ticks between snapshots */
+    private final int intervalTicks;
+    /** Number of ticks since last snapshot, used by game thread only */
+    private int ticks = 0;
+    /** Sequence number of newest written slot */
+    private long sequence;
+    /** Buffer free for next snapshot, null while autosave thread writes it */
+    private final AtomicReference<ByteBuffer> spare = new AtomicReference<>();
+    /** Snapshot waiting for autosave thread */
+    private final AtomicReference<ByteBuffer> pending = new AtomicReference<>();
+    /** Autosave thread */
+    private final Thread writer;
+    /** True until autosave is closed */
+    private volatile boolean running = true;
+
+    /**
+     * Constructor - opens or creates autosave file and starts autosave thread
+     * @param file autosave file
+     * @param intervalTicks number of ticks between snapshots
+     * @throws IOException if file cannot be opened or mapped
+     */
+    public Autosave(Path file, int intervalTicks) throws IOException
+    {
+        if (file.getParent() != null)
+        {
+            Files.createDirectories(file.getParent());
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.map = channel.map(FileChannel.MapMode.READ_WRITE, 0, 2 * SLOT_SIZE);
+        this.intervalTicks = intervalTicks;
+        this.sequence = Math.max(0, Math.max(validSequence(0), validSequence(1)));
+        spare.set(ByteBuffer.allocate(SLOT_SIZE - HEADER_SIZE));
+
+        writer = new Thread(this::writeLoop, "autosave");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Restores game from newest valid snapshot, if saved game was already over, new game is started
+     * @param game game with the same board size
+     * @return true if game was restored
+     */
+    public boolean load(Controller game)
+    {
+        int newest = validSequence(0) >= validSequence(1) ? 0 : 1;
+        if (validSequence(newest) <= 0)
+        {
+            return false;
+        }
+
+        try
+        {
+            game.readState(payload(newest));
+        }
+        catch (IllegalArgumentException e)
+        {
+            return false;
+        }
+        if (!game.isStarted())
+        {
+            game.start();
+        }
+        return true;
+    }
+
+    /**
+     * Called by game thread after every tick, every few ticks (and when game is over) snapshot is taken
+     * if autosave thread is still writing previous snapshot, this one is skipped, so game never waits
+     * @param game game
+     */
+    public void tick(Controller game)
+    {
+        if (++ticks < intervalTicks && game.isStarted())
+        {
+            return;
+        }
+        ByteBuffer buffer = spare.getAndSet(null);
+        if (buffer == null)
+        {
+            return;
+        }
+
+        ticks = 0;
+        buffer.clear();
+        game.writeState(buffer);
+        buffer.flip();
+        pending.set(buffer);
+        LockSupport.unpark(writer);
+    }
+
+    /**
+     * Writes snapshot immediately, e.g. when window is being closed
+     * @param game game
+     */
+    public void saveNow(Controller game)
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(game.getStateSize());
+        game.writeState(buffer);
+        buffer.flip();
+        writeSlot(buffer);
+    }
+
+    /**
+     * Stops autosave thread, writes waiting snapshot and closes file
+     * @throws IOException if file cannot be closed
+     */
+    @Override
+    public void close() throws IOException
+    {
+        running = false;
+        LockSupport.unpark(writer);
+        try
+        {
+            writer.join();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+
+    /**
+     * Autosave thread loop - waits for snapshots and writes them
+     */
+    private void writeLoop()
+    {
+        while (running || pending.get() != null)
+        {
+            ByteBuffer buffer = pending.getAndSet(null);
+            if (buffer == null)
+            {
+                LockSupport.park(this);
+                continue;
+            }
+            writeSlot(buffer);
+            spare.set(buffer);
+        }
+    }
+
+    /**
+     * Writes snapshot into older slot, sequence number is written last
+     * @param snapshot snapshot, from position to limit
+     */
+    private synchronized void writeSlot(ByteBuffer snapshot)
+    {
+        int length = snapshot.remaining();
+        if (length > SLOT_SIZE - HEADER_SIZE)
+        {
+            throw new IllegalArgumentException("Game snapshot is too big: " + length);
+        }
+        long next = sequence + 1;
+        int base = (int) (next % 2) * SLOT_SIZE;
+
+        CRC32 crc = new CRC32();
+        crc.update(snapshot.duplicate());
+        map.putLong(base, 0);
+        ByteBuffer slot = map.duplicate();
+        slot.position(base + HEADER_SIZE);
+        slot.put(snapshot.duplicate());
+        map.putInt(base + 8, length);
+        map.putInt(base + 12, (int) crc.getValue());
+        map.force();
+        map.putLong(base, next);
+        map.force();
+        sequence = next;
+    }
+
+    /**
+     * Sequence number of slot, if its snapshot is complete
+     * @param slot slot number (0 or 1)
+     * @return sequence number, -1 if slot is empty or damaged
+     */
+    private long validSequence(int slot)
+    {
+        int base = slot * SLOT_SIZE;
+        long slotSequence = map.getLong(base);
+        int length = map.getInt(base + 8);
+        if (slotSequence <= 0 || length <= 0 || length > SLOT_SIZE - HEADER_SIZE)
+        {
+            return -1;
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(payload(slot));
+        return (int) crc.getValue() == map.getInt(base + 12) ? slotSequence : -1;
+    }
+
+    /**
+     * Snapshot stored in slot
+     * @param slot slot number (0 or 1)
+     * @return buffer with snapshot
+     */
+    private ByteBuffer payload(int slot)
+    {
+        int base = slot * SLOT_SIZE;
+        ByteBuffer payload = map.duplicate();
+        payload.position(base + HEADER_SIZE);
+        payload.limit(base + HEADER_SIZE + map.getInt(base + 8));
+        return payload.slice();
+    }
+}
@@ -0,0 +1,75 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Packing of board into bytes, every square takes 3 bits (shape ordinal),
+ * squares are stored in board array order, lowest bits first
+ */
+public final class BoardPacker
+{
+    /** Number of bits per square */
+    private static final int BITS_PER_SQUARE = 3;
+    /** Mask of one square */
+    private static final int SQUARE_MASK = (1 << BITS_PER_SQUARE) - 1;
+
+    private BoardPacker()
+    {
+    }
+
+    /**
+     * Size of packed board
+     * @param squares number of squares
+     * @return number of bytes
+     */
+    public static int packedSize(int squares)
+    {
+        return (squares * BITS_PER_SQUARE + 7) / 8;
+    }
+
+    /**
+     * Writes packed board at current position of the buffer
+     * @param board board
+     * @param out output buffer, position is moved by packedSize(board.length)
+     */
+    public static void pack(Model.Shape[] board, ByteBuffer out)
+    {
+        int bits = 0;
+        int pending = 0;
+        for (Model.Shape shape : board)
+        {
+            bits |= shape.ordinal() << pending;
+            pending += BITS_PER_SQUARE;
+            if (pending >= 8)
+            {
+                out.put((byte) bits);
+                bits >>>= 8;
+                pending -= 8;
+            }
+        }
+        if (pending > 0)
+        {
+            out.put((byte) bits);
+        }
+    }
+
+    /**
+     * Reads packed board from current position of the buffer
+     * @param in input buffer, position is moved by packedSize(board.length)
+     * @param board board to be filled
+     */
+    public static void unpack(ByteBuffer in, Model.Shape[] board)
+    {
+        int bits = 0;
+        int pending = 0;
+        for (int i = 0; i < board.length; ++i)
+        {
+            if (pending < BITS_PER_SQUARE)
+            {
+                bits |= (in.get() & 0xFF) << pending;
+                pending += 8;
+            }
+            board[i] = Model.shapeOf(bits & SQUARE_MASK);
+            bits >>>= BITS_PER_SQUARE;
+            pending -= BITS_PER_SQUARE;
+        }
+    }
+}
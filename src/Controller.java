@@ -1,13 +1,33 @@
 
 import javax.swing.*;
 import java.awt.*;
+import java.nio.ByteBuffer;
 
 /**
  * Controller, center of application logic
  */
 public class Controller
 {
-    /** Tetris board */
+    /** Magic number at the beginning of game snapshot */
+    private static final int SNAPSHOT_MAGIC = 0x54534156; //TSAV
+    /** Version of game snapshot format */
+    private static final byte SNAPSHOT_VERSION = 2;
+    /** Snapshot flag - game has started */
+    private static final int FLAG_STARTED = 1;
+    /** Snapshot flag - game is paused */
+    private static final int FLAG_PAUSED = 2;
+    /** Snapshot flag - piece has felt */
+    private static final int FLAG_FALLING_FINISHED = 4;
+    /** Delay between logic ticks (in milliseconds) */
+    private static final int TICK_DELAY = 400;
+    /** Delay between logic ticks (in nanoseconds), used to interpolate falling piece */
+    private static final long TICK_NANOS = TICK_DELAY * 1_000_000L;
+    /** Duration of line clear animation (in nanoseconds) */
+    private static final long LINE_CLEAR_ANIMATION_NANOS = 250_000_000L;
+    /** Duration of lock animation (in nanoseconds) */
+    private static final long LOCK_ANIMATION_NANOS = 150_000_000L;
+
+    /** Tetris board, null if game is not shown in its own panel */
     private final TetrisBoard tetrisBoard;
     /** Board width (in squares)*/
     private final int BOARD_WIDTH;
@@ -19,20 +39,48 @@ public class Controller
     private boolean isStarted = false;
     /** True if game is paused */
     private boolean isPaused = false;
-    /** Delay after removal of full line */
-    private int removeDelay = 0;
     /** Number of removed lines, it's equal to player's score */
     private int numLinesRemoved = 0;
+    /** Random shape generator state at the start of current game */
+    private long gameSeed = 0;
     /** Current X coordinate */
     private int currentX = 0;
     /** Current Y coordinate */
     private int currentY = 0;
-    /** Timer */
+    /** Timer, null if game is driven by its owner */
     private final Timer timer;
     /** Current piece */
     private Model currentPiece;
+    /** Spare piece, rotated piece is written into it, so rotation does not allocate */
+    private Model sparePiece = new Model();
     /** Board */
     private final Model.Shape[] board;
+    /** Revision, incremented every time board or current piece changes */
+    private int revision = 0;
+    /** Game events, observers (e.g. status bar) subscribe to them */
+    private final GameEventBus events = new GameEventBus();
+    /** Metrics of ticks, pieces and line clears */
+    private final GameMetrics metrics = new GameMetrics();
+    /** Autosave, null if game is not saved */
+    private Autosave autosave;
+    /** Recorder of training data, null if locked pieces are not recorded */
+    private TrainingRecorder trainingRecorder;
+    /** Autoplay which places pieces, null if pieces are moved by player */
+    private Autoplay autoplay;
+    /** Time of last logic tick or last change of current piece's line (System.nanoTime) */
+    private long lastTickNanos = 0;
+    /** Time of last line removal (System.nanoTime) */
+    private long lineClearNanos = 0;
+    /** Removed lines of last line removal, bit y is set if line y was removed */
+    private int clearedLines = 0;
+    /** Time of last lock (System.nanoTime) */
+    private long lockNanos = System.nanoTime() - LOCK_ANIMATION_NANOS;
+    /** X coordinates of squares of last locked piece */
+    private final int[] lockedX = new int[4];
+    /** Y coordinates of squares of last locked piece (before line removal) */
+    private final int[] lockedY = new int[4];
+    /** Tile atlas with flash tiles of animations drawn by paint, null until first animation is drawn */
+    private TileAtlas flashTiles;
 
     /**
      * Constructor - sets model, view, timer delay,
@@ -42,12 +90,38 @@ public class Controller
      */
     public Controller(Model model, TetrisFrame tetrisFrame)
     {
-        this.tetrisBoard = tetrisFrame.getBoard();
-        this.BOARD_WIDTH = tetrisBoard.getBOARD_WIDTH();
-        this.BOARD_HEIGHT = tetrisBoard.getBOARD_HEIGHT();
+        this(model, tetrisFrame.getBoard(),
+                tetrisFrame.getBoard().getBOARD_WIDTH(), tetrisFrame.getBoard().getBOARD_HEIGHT());
+    }
+
+    /**
+     * Constructor of game without its own panel and timer (e.g. one of boards in tournament view),
+     * gameAction has to be called by the owner
+     * @param model piece
+     * @param boardWidth board width (in squares)
+     * @param boardHeight board height (in squares)
+     */
+    public Controller(Model model, int boardWidth, int boardHeight)
+    {
+        this(model, null, boardWidth, boardHeight);
+    }
+
+    /**
+     * Constructor - sets model, view, board size (in squares), clears board,
+     *               if there is a view, timer is created and activated
+     * @param model piece
+     * @param tetrisBoard view, can be null
+     * @param boardWidth board width (in squares)
+     * @param boardHeight board height (in squares)
+     */
+    private Controller(Model model, TetrisBoard tetrisBoard, int boardWidth, int boardHeight)
+    {
+        this.tetrisBoard = tetrisBoard;
+        this.BOARD_WIDTH = boardWidth;
+        this.BOARD_HEIGHT = boardHeight;
         this.currentPiece = model;
-        this.timer = new Timer(400, tetrisBoard);
-        timer.start();
+        this.timer = tetrisBoard != null ? tetrisBoard.createTimer(TICK_DELAY) : null;
+        startTimer();
         this.board = new Model.Shape[BOARD_WIDTH * BOARD_HEIGHT];
 
         clearBoard();
@@ -58,10 +132,12 @@ public class Controller
      * @see TetrisBoard#actionPerformed
      * when current piece felt down, new piece is created
      * if not, piece moves 1 square down
-     * this method always checks if there are full lines
+     * full lines are removed as soon as piece is locked
      */
     public void gameAction()
     {
+        long startNanos = System.nanoTime();
+        lastTickNanos = startNanos;
         if (isFallingFinished)
         {
             isFallingFinished = false;
@@ -71,7 +147,15 @@ public class Controller
         {
             oneLineDown();
         }
-        removeFullLines();
+        if (autoplay != null)
+        {
+            autoplay.tick(this);
+        }
+        if (autosave != null)
+        {
+            autosave.tick(this);
+        }
+        metrics.tickFinished(startNanos, System.nanoTime());
     }
 
     /**
@@ -101,6 +185,253 @@ public class Controller
         return currentPiece.getPieceShape() == Model.Shape.EmptyShape;
     }
 
+    /**
+     * Revision getter, views compare it with revision they have drawn
+     * to skip boards which have not changed
+     * @return revision
+     */
+    public int getRevision()
+    {
+        return revision;
+    }
+
+    /**
+     * Game event bus getter
+     * @return bus on which all game events are published
+     */
+    public GameEventBus getEvents()
+    {
+        return events;
+    }
+
+    /**
+     * Metrics getter
+     * @return metrics of this game
+     */
+    public GameMetrics getMetrics()
+    {
+        return metrics;
+    }
+
+    /**
+     * Score getter
+     * @return number of removed lines in current game
+     */
+    public int getScore()
+    {
+        return numLinesRemoved;
+    }
+
+    /**
+     * Game seed getter, game played with the same seed gets the same pieces
+     * @return random shape generator state at the start of current game
+     */
+    public long getGameSeed()
+    {
+        return gameSeed;
+    }
+
+    /**
+     * Autosave setter
+     * @param autosave autosave, to which snapshots of this game are written every few ticks
+     */
+    public void setAutosave(Autosave autosave)
+    {
+        this.autosave = autosave;
+    }
+
+    /**
+     * Training data recorder setter
+     * @param trainingRecorder recorder, to which every locked piece is written
+     */
+    public void setTrainingRecorder(TrainingRecorder trainingRecorder)
+    {
+        this.trainingRecorder = trainingRecorder;
+    }
+
+    /**
+     * Autoplay setter, game with window has to be changed on event dispatch thread
+     * @param autoplay autoplay, which places pieces after every tick, null to stop it
+     */
+    public void setAutoplay(Autoplay autoplay)
+    {
+        this.autoplay = autoplay;
+    }
+
+    /**
+     * Check if current piece has been locked and new piece will be created in next tick
+     * @return true if current piece felt down
+     */
+    public boolean isFallingFinished()
+    {
+        return isFallingFinished;
+    }
+
+    /**
+     * Shapes of current piece and of pieces which will come after it
+     * @param count number of pieces
+     * @return current piece shape followed by count - 1 next shapes
+     */
+    public Model.Shape[] upcomingPieces(int count)
+    {
+        Model.Shape[] pieces = new Model.Shape[count];
+        pieces[0] = currentPiece.getPieceShape();
+        Model generator = new Model(currentPiece.getRandomState());
+        for (int i = 1; i < count; ++i)
+        {
+            generator.setRandomShape();
+            pieces[i] = generator.getPieceShape();
+        }
+        return pieces;
+    }
+
+    /**
+     * Replaces board squares, current piece stays where it is
+     * @param squares new board, index is y * board width + x, y = 0 is bottom line
+     */
+    public void loadBoard(Model.Shape[] squares)
+    {
+        System.arraycopy(squares, 0, board, 0, board.length);
+        repaint();
+    }
+
+    /**
+     * Copies board squares, current piece is not included
+     * @param squares array for board squares, index is y * board width + x, y = 0 is bottom line
+     */
+    public void copyBoard(Model.Shape[] squares)
+    {
+        System.arraycopy(board, 0, squares, 0, board.length);
+    }
+
+    /**
+     * Places current piece - rotates it, moves it to given x coordinate and drops it
+     * @param rotations number of rotations 90 degrees to the right
+     * @param x x coordinate from which piece is dropped
+     * @return true if piece could be rotated and moved, piece is dropped in either case,
+     *         false if current piece has already been locked
+     */
+    public boolean place(int rotations, int x)
+    {
+        if (isFallingFinished)
+        {
+            return false;
+        }
+        int rotation = (currentPiece.getRotation() + rotations) % 4;
+        for (int i = 0; i < rotations; ++i)
+        {
+            rotateRight();
+        }
+        while (currentX != x)
+        {
+            if (!tryMove(currentPiece, currentX + (currentX < x ? 1 : -1), currentY))
+            {
+                break;
+            }
+        }
+        boolean placed = currentX == x && (currentPiece.getRotation() == rotation
+                || currentPiece.getPieceShape() == Model.Shape.OShape);
+        dropDown();
+        return placed;
+    }
+
+    /**
+     * Size of game snapshot
+     * @return number of bytes written by writeState
+     */
+    public int getStateSize()
+    {
+        return 4 + 1 + 2 + 1 + 1 + 1 + 1 + 2 + 2 + 4 + 8 + 8 + BoardPacker.packedSize(board.length);
+    }
+
+    /**
+     * Writes snapshot of game - board, current piece with its rotation and position,
+     * score, random shape generator state, game seed and pause state
+     * @param out output buffer, it has to have getStateSize() bytes remaining
+     */
+    public void writeState(ByteBuffer out)
+    {
+        int flags = (isStarted ? FLAG_STARTED : 0) | (isPaused ? FLAG_PAUSED : 0)
+                | (isFallingFinished ? FLAG_FALLING_FINISHED : 0);
+
+        out.putInt(SNAPSHOT_MAGIC);
+        out.put(SNAPSHOT_VERSION);
+        out.put((byte) BOARD_WIDTH);
+        out.put((byte) BOARD_HEIGHT);
+        out.put((byte) flags);
+        out.put((byte) 0); //unused, line removal delay before lines were removed on lock
+        out.put((byte) currentPiece.getPieceShape().ordinal());
+        out.put((byte) currentPiece.getRotation());
+        out.putShort((short) currentX);
+        out.putShort((short) currentY);
+        out.putInt(numLinesRemoved);
+        out.putLong(currentPiece.getRandomState());
+        out.putLong(gameSeed);
+        BoardPacker.pack(board, out);
+    }
+
+    /**
+     * Restores game from snapshot written by writeState
+     * @param in input buffer
+     * @throws IllegalArgumentException if snapshot has different format or board size
+     */
+    public void readState(ByteBuffer in)
+    {
+        if (in.getInt() != SNAPSHOT_MAGIC || in.get() != SNAPSHOT_VERSION)
+        {
+            throw new IllegalArgumentException("Unknown game snapshot format");
+        }
+        if (in.get() != BOARD_WIDTH || in.get() != BOARD_HEIGHT)
+        {
+            throw new IllegalArgumentException("Game snapshot has different board size");
+        }
+
+        int flags = in.get();
+        isStarted = (flags & FLAG_STARTED) != 0;
+        isPaused = (flags & FLAG_PAUSED) != 0;
+        isFallingFinished = (flags & FLAG_FALLING_FINISHED) != 0;
+        in.get();
+        Model.Shape shape = Model.shapeOf(in.get());
+        int rotation = in.get();
+        currentX = in.getShort();
+        currentY = in.getShort();
+        numLinesRemoved = in.getInt();
+        currentPiece.restore(shape, rotation, in.getLong());
+        gameSeed = in.getLong();
+        BoardPacker.unpack(in, board);
+        clearedLines = 0;
+        lockNanos = System.nanoTime() - LOCK_ANIMATION_NANOS;
+
+        if (isStarted && !isPaused)
+        {
+            startTimer();
+        }
+        else
+        {
+            stopTimer();
+        }
+        repaint();
+        publish(isPaused ? GameEventType.GAME_PAUSED : GameEventType.GAME_RESTORED, 0);
+    }
+
+    /**
+     * Board width getter
+     * @return board width (in squares)
+     */
+    public int getBoardWidth()
+    {
+        return BOARD_WIDTH;
+    }
+
+    /**
+     * Board height getter
+     * @return board height (in squares)
+     */
+    public int getBoardHeight()
+    {
+        return BOARD_HEIGHT;
+    }
+
     /**
      * Controller start, it's called in
      * @see TetrisFrame#init()
@@ -114,9 +445,11 @@ public class Controller
         isStarted = true;
         isFallingFinished = false;
         numLinesRemoved = 0;
+        gameSeed = currentPiece.getRandomState();
         clearBoard();
+        publish(GameEventType.GAME_STARTED, 0);
         newPiece();
-        timer.start();
+        startTimer();
 
     }
 
@@ -133,15 +466,15 @@ public class Controller
         isPaused = !isPaused;
         if (isPaused)
         {
-            timer.stop();
-            tetrisBoard.setStatusText("paused");
+            stopTimer();
+            publish(GameEventType.GAME_PAUSED, 0);
         }
         else
         {
-            timer.start();
-            tetrisBoard.setStatusText(String.valueOf(numLinesRemoved));
+            startTimer();
+            publish(GameEventType.GAME_RESUMED, 0);
         }
-        tetrisBoard.repaint();
+        repaint();
     }
 
     /**
@@ -166,6 +499,7 @@ public class Controller
         {
             board[i] = Model.Shape.EmptyShape;
         }
+        ++revision;
     }
 
     /**
@@ -197,39 +531,182 @@ public class Controller
     }
 
     /**
-     * Drawing additional grid
+     * Drawing board in area of given size (its own panel or offscreen image),
+     * animations are driven by time, not by logic ticks:
+     * falling piece moves smoothly between ticks, lines above removed lines slide down
+     * while removed lines fade out, and locked piece flashes
      * @param g Graphics object
      * @param width board width (in pixels)
      * @param height board height (in pixels)
+     * @param nowNanos current time (System.nanoTime)
      */
-    public void paint(Graphics g, double width, double height)
+    public void paint(Graphics g, double width, double height, long nowNanos)
     {
         int squareWidth = (int) width / BOARD_WIDTH;
         int squareHeight = (int) height / BOARD_HEIGHT;
+        if (squareWidth <= 0 || squareHeight <= 0)
+        {
+            return;
+        }
         int boardTop = (int) height - BOARD_HEIGHT * squareHeight;
 
-
         for (int i = 0; i < BOARD_HEIGHT; ++i)
         {
             for (int j = 0; j < BOARD_WIDTH; ++j)
             {
-                tetrisBoard.drawLines(g,j * squareWidth, boardTop + i * squareHeight);
-                Model.Shape shape = shapeAt(j, BOARD_HEIGHT - i - 1);
+                TileAtlas.drawGridCell(g, j * squareWidth, boardTop + i * squareHeight, squareWidth, squareHeight);
+            }
+        }
+
+        long clearElapsed = nowNanos - lineClearNanos;
+        int removed = clearElapsed < LINE_CLEAR_ANIMATION_NANOS ? clearedLines : 0;
+        double remaining = removed != 0 ? 1 - (double) clearElapsed / LINE_CLEAR_ANIMATION_NANOS : 0;
+
+        int removedBelow = 0;
+        for (int y = 0; y < BOARD_HEIGHT; ++y)
+        {
+            if ((removed & (1 << y)) != 0)
+            {
+                ++removedBelow;
+                continue;
+            }
+            int top = lineTop(boardTop, squareHeight, y - removedBelow * (1 - remaining));
+            for (int j = 0; j < BOARD_WIDTH; ++j)
+            {
+                Model.Shape shape = shapeAt(j, y - removedBelow);
                 if (shape != Model.Shape.EmptyShape)
                 {
-                    tetrisBoard.drawSquare(g, j * squareWidth, boardTop + i * squareHeight, shape);
+                    TileAtlas.drawSquare(g, j * squareWidth, top, squareWidth, squareHeight, shape.ordinal());
+                }
+            }
+        }
+
+        if (removed != 0)
+        {
+            TileAtlas tiles = flashTiles(squareWidth, squareHeight);
+            for (int y = 0; y < BOARD_HEIGHT; ++y)
+            {
+                if ((removed & (1 << y)) != 0)
+                {
+                    for (int j = 0; j < BOARD_WIDTH; ++j)
+                    {
+                        tiles.drawFlash(g, j * squareWidth, lineTop(boardTop, squareHeight, y), remaining);
+                    }
+                }
+            }
+        }
+
+        long lockElapsed = nowNanos - lockNanos;
+        if (lockElapsed < LOCK_ANIMATION_NANOS)
+        {
+            double flash = 1 - (double) lockElapsed / LOCK_ANIMATION_NANOS;
+            TileAtlas tiles = flashTiles(squareWidth, squareHeight);
+            for (int i = 0; i < 4; ++i)
+            {
+                int y = lockedY[i];
+                if ((removed & (1 << y)) == 0)
+                {
+                    int below = Integer.bitCount(removed & ((1 << y) - 1));
+                    tiles.drawFlash(g, lockedX[i] * squareWidth,
+                            lineTop(boardTop, squareHeight, y - below * (1 - remaining)), flash / 2);
                 }
             }
         }
 
+        if (currentPiece.getPieceShape() != Model.Shape.EmptyShape)
+        {
+            int fall = 0;
+            if (isFalling())
+            {
+                fall = (int) (squareHeight * Math.min(1.0, (double) (nowNanos - lastTickNanos) / TICK_NANOS));
+            }
+            for (int i = 0; i < 4; ++i)
+            {
+                int x = currentX + currentPiece.getX(i);
+                int y = currentY - currentPiece.getY(i);
+                TileAtlas.drawSquare(g, x * squareWidth, boardTop + (BOARD_HEIGHT - y - 1) * squareHeight + fall,
+                        squareWidth, squareHeight, currentPiece.getPieceShape().ordinal());
+            }
+        }
+    }
+
+    /**
+     * Check if board drawn at given time differs from the board drawn a moment later
+     * @param nowNanos current time (System.nanoTime)
+     * @return true if piece is falling or an animation is running
+     */
+    public boolean isAnimating(long nowNanos)
+    {
+        return isFalling()
+                || nowNanos - lineClearNanos < LINE_CLEAR_ANIMATION_NANOS
+                || nowNanos - lockNanos < LOCK_ANIMATION_NANOS;
+    }
+
+    /**
+     * Check if current piece is falling, falling piece is drawn between lines
+     * @return true if game is running and current piece can move one line down
+     */
+    private boolean isFalling()
+    {
+        return isStarted && !isPaused && !isFallingFinished && fits(currentPiece, currentX, currentY - 1);
+    }
+
+    /**
+     * Tile atlas with flash tiles of given size, it's rendered again only when square size changes
+     * @param squareWidth square width (in pixels)
+     * @param squareHeight square height (in pixels)
+     * @return tile atlas
+     */
+    private TileAtlas flashTiles(int squareWidth, int squareHeight)
+    {
+        if (flashTiles == null || !flashTiles.hasSize(squareWidth, squareHeight))
+        {
+            flashTiles = new TileAtlas(squareWidth, squareHeight);
+        }
+        return flashTiles;
+    }
+
+    /**
+     * Y coordinate of top edge of a line, line can be drawn between two board lines
+     * @param boardTop y coordinate of board's top edge (in pixels)
+     * @param squareHeight square height (in pixels)
+     * @param line line number, 0 is bottom line
+     * @return y coordinate (in pixels)
+     */
+    private int lineTop(int boardTop, int squareHeight, double line)
+    {
+        return boardTop + (int) Math.round((BOARD_HEIGHT - line - 1) * squareHeight);
+    }
+
+    /**
+     * Drawing board through shared tile atlas, used by views which draw many boards at once
+     * @param g Graphics object
+     * @param atlas tile atlas, its square size is used as square size of this board
+     * @param left x coordinate of board's left edge (in pixels)
+     * @param top y coordinate of board's top edge (in pixels)
+     */
+    public void paint(Graphics g, TileAtlas atlas, int left, int top)
+    {
+        int squareWidth = atlas.getSquareWidth();
+        int squareHeight = atlas.getSquareHeight();
+
+        for (int i = 0; i < BOARD_HEIGHT; ++i)
+        {
+            for (int j = 0; j < BOARD_WIDTH; ++j)
+            {
+                atlas.drawTile(g, left + j * squareWidth, top + i * squareHeight,
+                        shapeAt(j, BOARD_HEIGHT - i - 1));
+            }
+        }
+
         if (currentPiece.getPieceShape() != Model.Shape.EmptyShape)
         {
             for (int i = 0; i < 4; ++i)
             {
                 int x = currentX + currentPiece.getX(i);
                 int y = currentY - currentPiece.getY(i);
-                tetrisBoard.drawSquare(g, x * squareWidth,
-                        boardTop + (BOARD_HEIGHT - y - 1) * squareHeight,
+                atlas.drawTile(g, left + x * squareWidth,
+                        top + (BOARD_HEIGHT - y - 1) * squareHeight,
                         currentPiece.getPieceShape());
             }
         }
@@ -248,25 +725,63 @@ public class Controller
         if (!tryMove(currentPiece, currentX, currentY))
         {
             currentPiece.setPieceShape(Model.Shape.EmptyShape);
-            timer.stop();
+            stopTimer();
             isStarted = false;
-            tetrisBoard.setStatusText("Game over, your score: " + numLinesRemoved);
+            if (trainingRecorder != null)
+            {
+                trainingRecorder.gameOver(numLinesRemoved);
+            }
+            publish(GameEventType.GAME_OVER, 0);
+            repaint();
+        }
+        else
+        {
+            metrics.pieceSpawned();
+            repaint();
+            publish(GameEventType.PIECE_SPAWNED, 0);
         }
     }
 
     /**
-     * Check if given piece can be moved to given coordinates
+     * Check if given piece can be moved to given coordinates,
+     * if piece's line changes (also outside of tick, e.g. by key), its fall is interpolated from this moment
      * @param newPiece piece which we want to move
      * @param newX new x coordinate
      * @param newY new y coordinate
      * @return true if piece can be moved
      */
     private boolean tryMove(Model newPiece, int newX, int newY)
+    {
+        if (!fits(newPiece, newX, newY))
+        {
+            return false;
+        }
+
+        if (newY != currentY)
+        {
+            lastTickNanos = System.nanoTime();
+        }
+        currentPiece = newPiece;
+        currentX = newX;
+        currentY = newY;
+        repaint();
+        publish(GameEventType.PIECE_MOVED, 0);
+        return true;
+    }
+
+    /**
+     * Check if piece fits on the board at given coordinates
+     * @param piece piece
+     * @param newX x coordinate
+     * @param newY y coordinate
+     * @return true if all squares of the piece are inside the board and empty
+     */
+    private boolean fits(Model piece, int newX, int newY)
     {
         for (int i = 0; i < 4; ++i)
         {
-            int x = newX + newPiece.getX(i);
-            int y = newY - newPiece.getY(i);
+            int x = newX + piece.getX(i);
+            int y = newY - piece.getY(i);
             if (x < 0 || x >= BOARD_WIDTH || y < 0 || y >= BOARD_HEIGHT)
             {
                 return false;
@@ -276,11 +791,6 @@ public class Controller
                 return false;
             }
         }
-
-        currentPiece = newPiece;
-        currentX = newX;
-        currentY = newY;
-        tetrisBoard.repaint();
         return true;
     }
 
@@ -325,27 +835,42 @@ public class Controller
         }
 
         currentPiece = newPiece;
-        tetrisBoard.repaint();
+        repaint();
+        publish(GameEventType.PIECE_MOVED, 0);
     }
 
     /**
      * Method which is called when the piece is dropped down
      * This piece will remain as a part of the board until it's line will not be removed, until then it's stored in board array
+     * there is no current piece until new piece is created in next tick
      */
     private void pieceDropped()
     {
+        if (trainingRecorder != null)
+        {
+            trainingRecorder.pieceLocked(board, currentPiece, currentX, currentY);
+        }
         for (int i = 0; i < 4; ++i)
         {
             int x = currentX + currentPiece.getX(i);
             int y = currentY - currentPiece.getY(i);
             board[(y * BOARD_WIDTH) + x] = currentPiece.getPieceShape();
+            lockedX[i] = x;
+            lockedY[i] = y;
         }
+        lockNanos = System.nanoTime();
+        clearedLines = 0;
 
+        ++revision;
         isFallingFinished = true;
+        publish(GameEventType.PIECE_LOCKED, 0);
+        removeFullLines();
+        currentPiece.setPieceShape(Model.Shape.EmptyShape);
     }
 
     /**
      * Tries to remove full lines, and when it succeeds, it increments the score
+     * lines are removed immediately, removal is only animated by paint
      */
     private void removeFullLines()
     {
@@ -364,16 +889,10 @@ public class Controller
                 }
             }
 
-            if(lineIsFull && removeDelay < 1)
-            {
-                removeDelay++;
-                return;
-            }
-
-
-            if (lineIsFull && removeDelay == 1)
+            if (lineIsFull)
             {
                 ++numFullLines;
+                clearedLines |= 1 << i;
                 for (int k = i; k < BOARD_HEIGHT - 1; ++k)
                 {
                     for (int j = 0; j < BOARD_WIDTH; ++j)
@@ -387,8 +906,14 @@ public class Controller
         if (numFullLines > 0)
         {
             numLinesRemoved += numFullLines;
-            tetrisBoard.setStatusText("Score: " + numLinesRemoved);
-            removeDelay = 0;
+            metrics.linesCleared(numFullLines, numLinesRemoved);
+            if (trainingRecorder != null)
+            {
+                trainingRecorder.linesCleared(numFullLines);
+            }
+            publish(GameEventType.LINES_CLEARED, numFullLines);
+            lineClearNanos = System.nanoTime();
+            repaint();
         }
     }
 
@@ -413,6 +938,85 @@ public class Controller
      */
     public void rotateRight()
     {
-        tryRotate(currentPiece.rotateRight());
+        Model previousPiece = currentPiece;
+        tryRotate(currentPiece.rotateRight(sparePiece));
+        if (currentPiece != previousPiece)
+        {
+            sparePiece = previousPiece;
+        }
+    }
+
+    /**
+     * Shows player's place in leaderboard in status bar, if there is a view,
+     * can be called from any thread (e.g. event consumer which saves scores)
+     * @param score player's score
+     * @param rank place in leaderboard, 1 is the best, 0 if score could not be saved
+     */
+    public void showRank(int score, long rank)
+    {
+        if (tetrisBoard != null)
+        {
+            tetrisBoard.showRank(score, rank);
+        }
+    }
+
+    /**
+     * Attaches leaderboard to status bar, if there is a view - game over is then shown only by showRank,
+     * so that text without rank does not replace text with rank
+     * @param attached true if leaderboard calls showRank after every game over
+     */
+    public void setLeaderboardAttached(boolean attached)
+    {
+        if (tetrisBoard != null)
+        {
+            tetrisBoard.setLeaderboardAttached(attached);
+        }
+    }
+
+    /**
+     * Marks board as changed and repaints view, if there is one
+     */
+    private void repaint()
+    {
+        ++revision;
+        if (tetrisBoard != null)
+        {
+            metrics.repaintRequested();
+            tetrisBoard.repaint();
+        }
+    }
+
+    /**
+     * Publishes game event with current piece, its position and score
+     * @param type event type
+     * @param removedLines number of lines removed by this event
+     */
+    private void publish(GameEventType type, int removedLines)
+    {
+        events.publish(type, currentPiece.getPieceShape(), currentX, currentY, removedLines, numLinesRemoved);
+    }
+
+    /**
+     * Starts timer, if game has its own timer,
+     * falling piece is interpolated from this moment
+     */
+    private void startTimer()
+    {
+        lastTickNanos = System.nanoTime();
+        if (timer != null)
+        {
+            timer.start();
+        }
+    }
+
+    /**
+     * Stops timer, if game has its own timer
+     */
+    private void stopTimer()
+    {
+        if (timer != null)
+        {
+            timer.stop();
+        }
     }
 }
\ No newline at end of file
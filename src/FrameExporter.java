@@ -0,0 +1,241 @@
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Exporter of replay frames - works in headless AWT mode, frames are drawn into offscreen images
+ * game is simulated and drawn in tick order, frames are encoded in parallel on bounded worker pool
+ * and written in frame order, either as numbered PNG files or as one raw RGB24 file
+ */
+public class FrameExporter
+{
+    /** Board width (in squares) */
+    private final int boardWidth;
+    /** Board height (in squares) */
+    private final int boardHeight;
+    /** Tile atlas used for drawing all frames */
+    private final TileAtlas atlas;
+    /** Number of worker threads */
+    private final int threads;
+
+    /**
+     * Constructor
+     * @param boardWidth board width (in squares)
+     * @param boardHeight board height (in squares)
+     * @param squareSize square size (in pixels)
+     * @param threads number of worker threads
+     */
+    public FrameExporter(int boardWidth, int boardHeight, int squareSize, int threads)
+    {
+        this.boardWidth = boardWidth;
+        this.boardHeight = boardHeight;
+        this.atlas = new TileAtlas(squareSize, squareSize);
+        this.threads = threads;
+    }
+
+    /**
+     * Frame width getter
+     * @return frame width (in pixels)
+     */
+    public int getFrameWidth()
+    {
+        return boardWidth * atlas.getSquareWidth();
+    }
+
+    /**
+     * Frame height getter
+     * @return frame height (in pixels)
+     */
+    public int getFrameHeight()
+    {
+        return boardHeight * atlas.getSquareHeight();
+    }
+
+    /**
+     * Exports replay as PNG sequence frame_000000.png, frame_000001.png, ...
+     * @param replay replay
+     * @param directory output directory, created if it does not exist
+     * @return number of exported frames
+     * @throws IOException if frames cannot be encoded or written
+     */
+    public int exportPng(Replay replay, Path directory) throws IOException
+    {
+        Files.createDirectories(directory);
+        return export(replay, new FrameSink()
+        {
+            @Override
+            public byte[] encode(BufferedImage image) throws IOException
+            {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                ImageIO.write(image, "png", out);
+                return out.toByteArray();
+            }
+
+            @Override
+            public void write(int frame, byte[] data) throws IOException
+            {
+                Files.write(directory.resolve(String.format("frame_%06d.png", frame)), data);
+            }
+
+            @Override
+            public void close()
+            {
+            }
+        });
+    }
+
+    /**
+     * Exports replay as one raw file, frames are stored one after another,
+     * every pixel as 3 bytes (red, green, blue), rows from top to bottom
+     * @param replay replay
+     * @param file output file
+     * @return number of exported frames
+     * @throws IOException if file cannot be written
+     */
+    public int exportRaw(Replay replay, Path file) throws IOException
+    {
+        OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16);
+        return export(replay, new FrameSink()
+        {
+            @Override
+            public byte[] encode(BufferedImage image)
+            {
+                int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+                byte[] data = new byte[pixels.length * 3];
+                for (int i = 0; i < pixels.length; ++i)
+                {
+                    data[3 * i] = (byte) (pixels[i] >> 16);
+                    data[3 * i + 1] = (byte) (pixels[i] >> 8);
+                    data[3 * i + 2] = (byte) pixels[i];
+                }
+                return data;
+            }
+
+            @Override
+            public void write(int frame, byte[] data) throws IOException
+            {
+                out.write(data);
+            }
+
+            @Override
+            public void close() throws IOException
+            {
+                out.close();
+            }
+        });
+    }
+
+    /**
+     * Plays replay and passes every frame to the sink,
+     * at most 2 * threads frames are in flight, their images are reused
+     * @param replay replay
+     * @param sink frame encoder and writer
+     * @return number of exported frames
+     * @throws IOException if frame cannot be encoded or written
+     */
+    private int export(Replay replay, FrameSink sink) throws IOException
+    {
+        int window = 2 * threads;
+        BufferedImage[] images = new BufferedImage[window];
+        for (int i = 0; i < window; ++i)
+        {
+            images[i] = new BufferedImage(getFrameWidth(), getFrameHeight(), BufferedImage.TYPE_INT_RGB);
+        }
+
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        ArrayDeque<Future<byte[]>> inFlight = new ArrayDeque<>();
+        int frames = replay.getTicks() + 1;
+        int written = 0;
+        try
+        {
+            Controller game = replay.newGame(boardWidth, boardHeight);
+            for (int frame = 0; frame < frames; ++frame)
+            {
+                if (frame > 0)
+                {
+                    replay.playTick(game, frame - 1);
+                }
+                if (inFlight.size() == window)
+                {
+                    sink.write(written++, await(inFlight.poll()));
+                }
+
+                BufferedImage image = images[frame % window];
+                Graphics g = image.getGraphics();
+                game.paint(g, atlas, 0, 0);
+                g.dispose();
+                inFlight.add(workers.submit(() -> sink.encode(image)));
+            }
+            while (!inFlight.isEmpty())
+            {
+                sink.write(written++, await(inFlight.poll()));
+            }
+        }
+        finally
+        {
+            workers.shutdownNow();
+            sink.close();
+        }
+        return written;
+    }
+
+    /**
+     * Waits for encoded frame
+     * @param future encoding task
+     * @return encoded frame
+     * @throws IOException if encoding failed or waiting was interrupted
+     */
+    private static byte[] await(Future<byte[]> future) throws IOException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (ExecutionException e)
+        {
+            throw new IOException("Frame encoding failed", e.getCause());
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Frame export interrupted");
+        }
+    }
+
+    /**
+     * Frame encoder and writer
+     */
+    private interface FrameSink
+    {
+        /**
+         * Encodes frame, called on worker thread
+         * @param image frame image
+         * @return encoded frame
+         * @throws IOException if frame cannot be encoded
+         */
+        byte[] encode(BufferedImage image) throws IOException;
+
+        /**
+         * Writes encoded frame, called in frame order
+         * @param frame frame number
+         * @param data encoded frame
+         * @throws IOException if frame cannot be written
+         */
+        void write(int frame, byte[] data) throws IOException;
+
+        /**
+         * Called after last frame
+         * @throws IOException if output cannot be closed
+         */
+        void close() throws IOException;
+    }
+}
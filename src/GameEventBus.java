@@ -0,0 +1,258 @@
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Game event bus - bounded single-producer ring buffer
+ * producer (game thread) never waits: it overwrites the oldest slot, so consumer which is too slow
+ * loses events instead of blocking the game, every consumer reads the ring on its own thread
+ * slot is protected by its sequence number (seqlock), so consumer never reads half-written event
+ * consumer without events parks until producer publishes next one, producer only unparks consumers
+ * which have marked themselves as parked, so it never blocks
+ */
+public class GameEventBus
+{
+    /** Default number of slots */
+    public static final int DEFAULT_CAPACITY = 1024;
+    /** Sequence number of slot which is being written */
+    private static final long WRITING = -1;
+    /** Event types, cached to avoid array copy in values() */
+    private static final GameEventType[] TYPES = GameEventType.values();
+
+    /** Mask for slot index (capacity - 1) */
+    private final int mask;
+    /** Sequence number of event stored in every slot */
+    private final AtomicLongArray sequences;
+    /** Event type ordinals */
+    private final byte[] types;
+    /** Shape ordinals */
+    private final byte[] shapes;
+    /** X coordinates */
+    private final int[] xs;
+    /** Y coordinates */
+    private final int[] ys;
+    /** Numbers of removed lines */
+    private final int[] lines;
+    /** Scores */
+    private final int[] scores;
+    /** Sequence number of next event, written only by producer */
+    private long nextSequence = 0;
+    /** Number of published events, read by consumers */
+    private final AtomicLong published = new AtomicLong();
+    /** Active subscriptions, array is replaced when subscription is added or closed */
+    private volatile Subscription[] subscriptions = new Subscription[0];
+
+    /**
+     * Constructor with default capacity
+     */
+    public GameEventBus()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor
+     * @param capacity number of slots, has to be power of two
+     */
+    public GameEventBus(int capacity)
+    {
+        if (Integer.bitCount(capacity) != 1)
+        {
+            throw new IllegalArgumentException("Capacity has to be power of two: " + capacity);
+        }
+        this.mask = capacity - 1;
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; ++i)
+        {
+            sequences.set(i, WRITING);
+        }
+        this.types = new byte[capacity];
+        this.shapes = new byte[capacity];
+        this.xs = new int[capacity];
+        this.ys = new int[capacity];
+        this.lines = new int[capacity];
+        this.scores = new int[capacity];
+    }
+
+    /**
+     * Publishes event, it can be called only from one thread
+     * it never blocks and does not allocate
+     * @param type event type
+     * @param shape current piece shape
+     * @param x current piece x coordinate
+     * @param y current piece y coordinate
+     * @param removedLines number of lines removed by this event
+     * @param score player's score
+     */
+    public void publish(GameEventType type, Model.Shape shape, int x, int y, int removedLines, int score)
+    {
+        long sequence = nextSequence++;
+        int index = (int) sequence & mask;
+
+        sequences.setOpaque(index, WRITING);
+        VarHandle.storeStoreFence();
+        types[index] = (byte) type.ordinal();
+        shapes[index] = (byte) shape.ordinal();
+        xs[index] = x;
+        ys[index] = y;
+        lines[index] = removedLines;
+        scores[index] = score;
+        sequences.setRelease(index, sequence);
+        //volatile write, so that check of parked flags below cannot be reordered before it
+        published.set(sequence + 1);
+        for (Subscription subscription : subscriptions)
+        {
+            if (subscription.parked)
+            {
+                LockSupport.unpark(subscription.thread);
+            }
+        }
+    }
+
+    /**
+     * Starts consumer thread, which receives events published from now on
+     * @param name thread name
+     * @param listener event consumer
+     * @return subscription, which can be closed
+     */
+    public Subscription subscribe(String name, GameEventListener listener)
+    {
+        Subscription subscription = new Subscription(listener, published.getAcquire(), name);
+        synchronized (this)
+        {
+            Subscription[] added = Arrays.copyOf(subscriptions, subscriptions.length + 1);
+            added[added.length - 1] = subscription;
+            subscriptions = added;
+        }
+        subscription.thread.start();
+        return subscription;
+    }
+
+    /**
+     * Removes closed subscription, so producer does not check it anymore
+     * @param subscription closed subscription, nothing is removed if it's not active
+     */
+    private synchronized void remove(Subscription subscription)
+    {
+        int index = Arrays.asList(subscriptions).indexOf(subscription);
+        if (index < 0)
+        {
+            return;
+        }
+        Subscription[] remaining = Arrays.copyOf(subscriptions, subscriptions.length - 1);
+        System.arraycopy(subscriptions, index + 1, remaining, index, remaining.length - index);
+        subscriptions = remaining;
+    }
+
+    /**
+     * Consumer of the bus with its own read position
+     */
+    public class Subscription implements Runnable
+    {
+        /** Event consumer */
+        private final GameEventListener listener;
+        /** Sequence number of next event to be read */
+        private long cursor;
+        /** True until subscription is closed */
+        private volatile boolean running = true;
+        /** True while consumer thread is parked or about to park, producer unparks it then */
+        private volatile boolean parked = false;
+        /** Consumer thread */
+        private final Thread thread;
+
+        /**
+         * Constructor
+         * @param listener event consumer
+         * @param cursor sequence number of first event to be read
+         * @param name consumer thread name
+         */
+        private Subscription(GameEventListener listener, long cursor, String name)
+        {
+            this.listener = listener;
+            this.cursor = cursor;
+            this.thread = new Thread(this, name);
+            this.thread.setDaemon(true);
+        }
+
+        /**
+         * Stops consumer thread, closing already closed subscription does nothing
+         */
+        public void close()
+        {
+            if (!running)
+            {
+                return;
+            }
+            running = false;
+            remove(this);
+            LockSupport.unpark(thread);
+        }
+
+        /**
+         * Consumer loop - reads all available events, then parks until next event is published,
+         * parked flag is set before last check of published events, so event published meanwhile unparks it
+         */
+        @Override
+        public void run()
+        {
+            while (running)
+            {
+                if (poll() > 0)
+                {
+                    continue;
+                }
+                parked = true;
+                if (published.get() <= cursor && running)
+                {
+                    LockSupport.park(this);
+                }
+                parked = false;
+            }
+        }
+
+        /**
+         * Reads all available events and passes them to the listener
+         * @return number of read events
+         */
+        private int poll()
+        {
+            long available = published.getAcquire();
+            long oldest = available - (mask + 1);
+            if (cursor < oldest)
+            {
+                listener.onEventsLost(oldest - cursor);
+                cursor = oldest;
+            }
+
+            int count = 0;
+            while (cursor < available)
+            {
+                int index = (int) cursor & mask;
+                GameEventType type = TYPES[types[index]];
+                Model.Shape shape = Model.shapeOf(shapes[index]);
+                int x = xs[index];
+                int y = ys[index];
+                int removedLines = lines[index];
+                int score = scores[index];
+                VarHandle.acquireFence();
+
+                if (sequences.getAcquire(index) != cursor)
+                {
+                    //slot has been overwritten while it was read, catch up with producer
+                    long skipTo = Math.max(cursor + 1, published.getAcquire() - mask);
+                    listener.onEventsLost(skipTo - cursor);
+                    cursor = skipTo;
+                    available = published.getAcquire();
+                    continue;
+                }
+
+                listener.onEvent(type, shape, x, y, removedLines, score);
+                ++cursor;
+                ++count;
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+/**
+ * Consumer of game events, it's called on consumer's own thread
+ * @see GameEventBus#subscribe(String, GameEventListener)
+ */
+public interface GameEventListener
+{
+    /**
+     * Method, which is called for every received event
+     * @param type event type
+     * @param shape current piece shape
+     * @param x current piece x coordinate
+     * @param y current piece y coordinate
+     * @param lines number of lines removed by this event (only LINES_CLEARED)
+     * @param score player's score
+     */
+    void onEvent(GameEventType type, Model.Shape shape, int x, int y, int lines, int score);
+
+    /**
+     * Method, which is called when consumer was too slow and events were overwritten
+     * @param count number of lost events
+     */
+    default void onEventsLost(long count)
+    {
+    }
+}
@@ -0,0 +1,25 @@
+/**
+ * Types of game events published by controller
+ * @see GameEventBus
+ */
+public enum GameEventType
+{
+    /** Game has started */
+    GAME_STARTED,
+    /** New piece has appeared at the top of the board */
+    PIECE_SPAWNED,
+    /** Current piece has been moved or rotated */
+    PIECE_MOVED,
+    /** Current piece has felt down and became a part of the board */
+    PIECE_LOCKED,
+    /** Full lines have been removed */
+    LINES_CLEARED,
+    /** Game has been paused */
+    GAME_PAUSED,
+    /** Game has been resumed */
+    GAME_RESUMED,
+    /** Game has been restored from snapshot */
+    GAME_RESTORED,
+    /** New piece cannot be placed, game is over */
+    GAME_OVER
+}
@@ -0,0 +1,349 @@
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Game metrics - durations of ticks and paints, input-to-move latency, pieces per second and allocation rate
+ * values are recorded by game thread into histograms without locks and allocation,
+ * they can be read through JMX (see register), line clears and long frames are also recorded as JFR events
+ */
+public class GameMetrics implements GameMetricsMBean
+{
+    /** Tick or paint longer than this is a long frame (in nanoseconds, one frame at 60 Hz) */
+    public static final long LONG_FRAME_NANOS = 16_666_667;
+    /** Number of values kept in rolling windows */
+    private static final int WINDOW_SIZE = 128;
+
+    /** Tick durations */
+    private final LatencyHistogram tickTimes = new LatencyHistogram();
+    /** Paint durations */
+    private final LatencyHistogram paintTimes = new LatencyHistogram();
+    /** Times from key press to painted frame which shows the move */
+    private final LatencyHistogram inputLatencies = new LatencyHistogram();
+    /** Durations of last ticks, used by game thread only */
+    private final RollingWindow recentTickTimes = new RollingWindow(WINDOW_SIZE);
+    /** Durations of last paints, used by game thread only */
+    private final RollingWindow recentPaintTimes = new RollingWindow(WINDOW_SIZE);
+    /** Numbers of repaint requests coalesced into last frames, used by game thread only */
+    private final RollingWindow recentRepaints = new RollingWindow(WINDOW_SIZE);
+    /** Number of repaint requests since last painted frame */
+    private int pendingRepaints = 0;
+    /** Thread bean, used for measuring allocated bytes */
+    private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    /** Time of start or last reset (in nanoseconds) */
+    private volatile long startNanos = System.nanoTime();
+    /** Id of game thread, 0 until first tick */
+    private volatile long gameThreadId = 0;
+    /** Bytes allocated by game thread before start or last reset */
+    private volatile long startAllocatedBytes = 0;
+    /** Number of new pieces */
+    private volatile long pieces = 0;
+    /** Number of line clears */
+    private volatile long lineClears = 0;
+    /** Number of long frames */
+    private volatile long longFrames = 0;
+    /** Time of key press which moved piece, but is not painted yet (in nanoseconds), 0 if there is none */
+    private long pendingInputNanos = 0;
+    /** True if reset was requested from other thread */
+    private volatile boolean resetRequested = false;
+
+    /**
+     * Registers metrics in platform MBean server,
+     * failure is only reported, because game can run without metrics
+     * @param name object name, e.g. "Tetris:type=GameMetrics"
+     */
+    public void register(String name)
+    {
+        try
+        {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(name));
+        }
+        catch (JMException e)
+        {
+            System.err.println("Game metrics are not available through JMX: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Records game tick
+     * @param startNanos tick start time
+     * @param endNanos tick end time
+     */
+    public void tickFinished(long startNanos, long endNanos)
+    {
+        if (gameThreadId == 0)
+        {
+            gameThreadId = Thread.currentThread().getId();
+            startAllocatedBytes = allocatedBytes();
+        }
+        if (resetRequested)
+        {
+            clear();
+        }
+        tickTimes.record(endNanos - startNanos);
+        recentTickTimes.add(endNanos - startNanos);
+        checkLongFrame("tick", startNanos, endNanos);
+    }
+
+    /**
+     * Records painted frame, if there was key press which moved piece,
+     * its latency is recorded too
+     * @param startNanos paint start time
+     * @param endNanos paint end time
+     */
+    public void framePainted(long startNanos, long endNanos)
+    {
+        paintTimes.record(endNanos - startNanos);
+        recentPaintTimes.add(endNanos - startNanos);
+        recentRepaints.add(pendingRepaints);
+        pendingRepaints = 0;
+        if (pendingInputNanos != 0)
+        {
+            inputLatencies.record(endNanos - pendingInputNanos);
+            pendingInputNanos = 0;
+        }
+        checkLongFrame("paint", startNanos, endNanos);
+    }
+
+    /**
+     * Records key press which has moved or rotated piece,
+     * latency is measured when next frame is painted
+     * @param inputNanos key press time
+     */
+    public void inputApplied(long inputNanos)
+    {
+        if (pendingInputNanos == 0)
+        {
+            pendingInputNanos = inputNanos;
+        }
+    }
+
+    /**
+     * Records repaint request, requests made before next paint are coalesced into one frame
+     */
+    public void repaintRequested()
+    {
+        ++pendingRepaints;
+    }
+
+    /**
+     * Durations of last ticks getter, window can be used only by game thread
+     * @return rolling window of tick durations (in nanoseconds)
+     */
+    public RollingWindow getRecentTickTimes()
+    {
+        return recentTickTimes;
+    }
+
+    /**
+     * Durations of last paints getter, window can be used only by game thread
+     * @return rolling window of paint durations (in nanoseconds)
+     */
+    public RollingWindow getRecentPaintTimes()
+    {
+        return recentPaintTimes;
+    }
+
+    /**
+     * Coalesced repaint requests getter, window can be used only by game thread
+     * @return rolling window of numbers of repaint requests per painted frame
+     */
+    public RollingWindow getRecentRepaints()
+    {
+        return recentRepaints;
+    }
+
+    /**
+     * Records new piece
+     */
+    public void pieceSpawned()
+    {
+        pieces = pieces + 1;
+    }
+
+    /**
+     * Records removal of full lines
+     * @param lines number of removed lines
+     * @param score player's score after removal
+     */
+    public void linesCleared(int lines, int score)
+    {
+        lineClears = lineClears + 1;
+
+        LineClearEvent event = new LineClearEvent();
+        if (event.shouldCommit())
+        {
+            event.lines = lines;
+            event.score = score;
+            event.commit();
+        }
+    }
+
+    /**
+     * Counts long frame and records JFR event for it
+     * @param phase "tick" or "paint"
+     * @param startNanos start time
+     * @param endNanos end time
+     */
+    private void checkLongFrame(String phase, long startNanos, long endNanos)
+    {
+        long duration = endNanos - startNanos;
+        if (duration < LONG_FRAME_NANOS)
+        {
+            return;
+        }
+        longFrames = longFrames + 1;
+
+        LongFrameEvent event = new LongFrameEvent();
+        if (event.shouldCommit())
+        {
+            event.phase = phase;
+            event.frameDuration = duration;
+            event.commit();
+        }
+    }
+
+    /**
+     * Removes all recorded values, called by game thread
+     */
+    private void clear()
+    {
+        resetRequested = false;
+        tickTimes.reset();
+        paintTimes.reset();
+        inputLatencies.reset();
+        pieces = 0;
+        lineClears = 0;
+        longFrames = 0;
+        startNanos = System.nanoTime();
+        startAllocatedBytes = allocatedBytes();
+    }
+
+    /**
+     * Bytes allocated by game thread
+     * @return allocated bytes, -1 if it cannot be measured
+     */
+    private long allocatedBytes()
+    {
+        if (gameThreadId == 0 || !(threadBean instanceof com.sun.management.ThreadMXBean))
+        {
+            return -1;
+        }
+        return ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(gameThreadId);
+    }
+
+    /**
+     * Seconds since start or last reset
+     * @return elapsed seconds
+     */
+    private double elapsedSeconds()
+    {
+        return (System.nanoTime() - startNanos) / 1e9;
+    }
+
+    /**
+     * Nanoseconds to microseconds
+     * @param nanos value in nanoseconds
+     * @return value in microseconds
+     */
+    private static double micros(long nanos)
+    {
+        return nanos / 1e3;
+    }
+
+    @Override
+    public long getTickCount()
+    {
+        return tickTimes.getCount();
+    }
+
+    @Override
+    public double getTickP50Micros()
+    {
+        return micros(tickTimes.getValueAtQuantile(0.5));
+    }
+
+    @Override
+    public double getTickP99Micros()
+    {
+        return micros(tickTimes.getValueAtQuantile(0.99));
+    }
+
+    @Override
+    public double getTickMaxMicros()
+    {
+        return micros(tickTimes.getMax());
+    }
+
+    @Override
+    public long getPaintCount()
+    {
+        return paintTimes.getCount();
+    }
+
+    @Override
+    public double getPaintP50Micros()
+    {
+        return micros(paintTimes.getValueAtQuantile(0.5));
+    }
+
+    @Override
+    public double getPaintP99Micros()
+    {
+        return micros(paintTimes.getValueAtQuantile(0.99));
+    }
+
+    @Override
+    public double getPaintMaxMicros()
+    {
+        return micros(paintTimes.getMax());
+    }
+
+    @Override
+    public double getInputLatencyP50Micros()
+    {
+        return micros(inputLatencies.getValueAtQuantile(0.5));
+    }
+
+    @Override
+    public double getInputLatencyP99Micros()
+    {
+        return micros(inputLatencies.getValueAtQuantile(0.99));
+    }
+
+    @Override
+    public double getPiecesPerSecond()
+    {
+        return pieces / elapsedSeconds();
+    }
+
+    @Override
+    public double getAllocatedBytesPerSecond()
+    {
+        long allocated = allocatedBytes();
+        if (allocated < 0 || startAllocatedBytes < 0)
+        {
+            return -1;
+        }
+        return (allocated - startAllocatedBytes) / elapsedSeconds();
+    }
+
+    @Override
+    public long getLineClears()
+    {
+        return lineClears;
+    }
+
+    @Override
+    public long getLongFrames()
+    {
+        return longFrames;
+    }
+
+    @Override
+    public void reset()
+    {
+        resetRequested = true;
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ * Management interface of game metrics, all durations are in microseconds
+ * @see GameMetrics
+ */
+public interface GameMetricsMBean
+{
+    /**
+     * Number of game ticks
+     * @return number of game ticks
+     */
+    long getTickCount();
+
+    /**
+     * Median tick duration
+     * @return median gameAction duration
+     */
+    double getTickP50Micros();
+
+    /**
+     * 99th percentile of tick duration
+     * @return 99th percentile of gameAction duration
+     */
+    double getTickP99Micros();
+
+    /**
+     * Maximal tick duration
+     * @return maximal gameAction duration
+     */
+    double getTickMaxMicros();
+
+    /**
+     * Number of painted frames
+     * @return number of painted frames
+     */
+    long getPaintCount();
+
+    /**
+     * Median paint duration
+     * @return median paint duration
+     */
+    double getPaintP50Micros();
+
+    /**
+     * 99th percentile of paint duration
+     * @return 99th percentile of paint duration
+     */
+    double getPaintP99Micros();
+
+    /**
+     * Maximal paint duration
+     * @return maximal paint duration
+     */
+    double getPaintMaxMicros();
+
+    /**
+     * Median input-to-move latency
+     * @return median time from key press to painted frame which shows the move
+     */
+    double getInputLatencyP50Micros();
+
+    /**
+     * 99th percentile of input-to-move latency
+     * @return 99th percentile of time from key press to painted frame which shows the move
+     */
+    double getInputLatencyP99Micros();
+
+    /**
+     * Pieces per second
+     * @return average number of new pieces per second since reset
+     */
+    double getPiecesPerSecond();
+
+    /**
+     * Allocation rate of game thread
+     * @return average number of bytes allocated per second by game thread since reset
+     */
+    double getAllocatedBytesPerSecond();
+
+    /**
+     * Number of line clears
+     * @return number of line clears since reset
+     */
+    long getLineClears();
+
+    /**
+     * Number of long frames
+     * @return number of ticks and paints longer than one frame since reset
+     */
+    long getLongFrames();
+
+    /**
+     * Removes all recorded values, they are removed by game thread before its next tick
+     */
+    void reset();
+}
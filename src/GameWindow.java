@@ -0,0 +1,71 @@
+import javax.swing.*;
+import java.lang.reflect.InvocationTargetException;
+import java.util.List;
+
+/**
+ * Creation of windows - the only place where start of the application touches Swing,
+ * so modes without window never load AWT classes
+ */
+public final class GameWindow
+{
+    private GameWindow()
+    {
+    }
+
+    /**
+     * Opens game window and starts the game
+     * @param model piece, its random shape generator gives sequence of pieces
+     * @param autosave autosave, to which game is saved when window is being closed, can be null
+     * @param firstFrameListener called on event dispatch thread after first frame is painted, can be null
+     * @return controller of the game
+     */
+    public static Controller openGame(Model model, Autosave autosave, Runnable firstFrameListener)
+    {
+        TetrisFrame game = new TetrisFrame();
+        Controller controller = new Controller(model, game);
+        game.setController(controller);
+        game.getBoard().setFirstFrameListener(firstFrameListener);
+        if (autosave != null)
+        {
+            game.saveOnClose(autosave);
+        }
+        game.init();
+        return controller;
+    }
+
+    /**
+     * Runs task on event dispatch thread and waits for it, so it does not race with game timer and painting
+     * @param task task, e.g. restoring saved game in window opened by openGame
+     */
+    public static void runOnEventThread(Runnable task)
+    {
+        try
+        {
+            SwingUtilities.invokeAndWait(task);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch (InvocationTargetException e)
+        {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Opens tournament view
+     * @param numGames number of games
+     * @param replays replays played by first boards
+     */
+    public static void openTournament(int numGames, List<Replay> replays)
+    {
+        TournamentPanel panel = new TournamentPanel(numGames, replays);
+        JFrame frame = new JFrame("Tetris tournament");
+        frame.add(panel);
+        frame.setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
+        frame.pack();
+        frame.setVisible(true);
+        panel.start();
+    }
+}
@@ -0,0 +1,131 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of durations (in nanoseconds) with log-linear buckets:
+ * every power of two is split into 8 buckets, so percentiles have error below 12.5%
+ * values are recorded by one thread without locks and allocation, other threads can read them at any time
+ */
+public class LatencyHistogram
+{
+    /** Number of bits used for bucket inside power of two */
+    private static final int SUB_BUCKET_BITS = 3;
+    /** Number of buckets inside power of two */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /** Number of buckets */
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    /** Number of values in every bucket */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    /** Number of recorded values */
+    private volatile long count = 0;
+    /** Maximal recorded value */
+    private volatile long max = 0;
+
+    /**
+     * Records value, it can be called only from one thread
+     * @param nanos duration (in nanoseconds)
+     */
+    public void record(long nanos)
+    {
+        int bucket = bucketOf(Math.max(0, nanos));
+        counts.lazySet(bucket, counts.get(bucket) + 1);
+        if (nanos > max)
+        {
+            max = nanos;
+        }
+        count = count + 1;
+    }
+
+    /**
+     * Number of recorded values getter
+     * @return number of recorded values
+     */
+    public long getCount()
+    {
+        return count;
+    }
+
+    /**
+     * Maximal recorded value getter
+     * @return maximal value (in nanoseconds)
+     */
+    public long getMax()
+    {
+        return max;
+    }
+
+    /**
+     * Value below which given part of recorded values is
+     * @param quantile quantile from 0 to 1 (e.g. 0.99 for 99th percentile)
+     * @return upper bound of bucket containing the quantile (in nanoseconds), 0 if histogram is empty
+     */
+    public long getValueAtQuantile(double quantile)
+    {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; ++i)
+        {
+            total += counts.get(i);
+        }
+        if (total == 0)
+        {
+            return 0;
+        }
+
+        long target = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; ++i)
+        {
+            seen += counts.get(i);
+            if (seen >= target)
+            {
+                return Math.min(upperBoundOf(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Removes all recorded values, it should be called from recording thread
+     */
+    public void reset()
+    {
+        for (int i = 0; i < BUCKETS; ++i)
+        {
+            counts.set(i, 0);
+        }
+        count = 0;
+        max = 0;
+    }
+
+    /**
+     * Bucket index of given value
+     * @param value value (not negative)
+     * @return bucket index
+     */
+    private static int bucketOf(long value)
+    {
+        if (value < SUB_BUCKETS)
+        {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> exponent) - SUB_BUCKETS;
+        return (exponent + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Largest value which falls into given bucket
+     * @param bucket bucket index
+     * @return largest value of the bucket
+     */
+    private static long upperBoundOf(int bucket)
+    {
+        if (bucket < SUB_BUCKETS)
+        {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS - 1;
+        long subBucket = bucket % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << exponent) - 1;
+    }
+}
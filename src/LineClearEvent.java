@@ -0,0 +1,23 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event recorded when full lines are removed
+ */
+@Name("tetris.LineClear")
+@Label("Line Clear")
+@Category("Tetris")
+@Description("Full lines have been removed from the board")
+public class LineClearEvent extends Event
+{
+    /** Number of removed lines */
+    @Label("Lines")
+    int lines;
+
+    /** Player's score after removal */
+    @Label("Score")
+    int score;
+}
@@ -0,0 +1,26 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event recorded when game tick or painting takes longer than one frame
+ * @see GameMetrics#LONG_FRAME_NANOS
+ */
+@Name("tetris.LongFrame")
+@Label("Long Frame")
+@Category("Tetris")
+@Description("Game tick or painting took longer than one frame")
+public class LongFrameEvent extends Event
+{
+    /** Which part of the frame was long: "tick" or "paint" */
+    @Label("Phase")
+    String phase;
+
+    /** Duration of that part */
+    @Label("Frame Duration")
+    @Timespan(Timespan.NANOSECONDS)
+    long frameDuration;
+}
@@ -1,5 +1,3 @@
-import java.util.Random;
-
 /**
  * Model - module which contains data and methods which can process it
  */
@@ -20,6 +18,47 @@ public class Model
         JShape
     }
 
+    /**
+     * 3D array which contains coordinates of every square of every peace on the board
+     */
+    private static final int[][][] COORDS_TABLE = new int[][][]
+            {
+                    //NoShape
+                    {
+                            {0, 0}, {0, 0}, {0, 0}, {0, 0}
+                    },
+                    //ZShape
+                    {
+                            {1, 0}, {0, 0}, {0, -1}, {-1, -1}
+                    },
+                    //SShape
+                    {
+                            {-1, 0}, {0, 0}, {0, -1}, {1, -1}
+                    },
+                    //LineShape
+                    {
+                            {-2, 0}, {-1, 0}, {0, 0}, {1, 0}
+                    },
+                    //TShape
+                    {
+                            {-1, 0}, {0, 0}, {1, 0}, {0, 1}
+                    },
+                    //SquareShape
+                    {
+                            {0, 0}, {1, 0}, {0, 1}, {1, 1}
+                    },
+                    //LShape
+                    {
+                            {-1, 0}, {0, 0}, {1, 0}, {1, -1}
+                    },
+                    //JShape
+                    {
+                            {1, 0}, {0, 0}, {-1, 0}, {-1, -1}
+                    }
+            };
+    /** All shapes, cached to avoid array copy in values() */
+    private static final Shape[] SHAPES = Shape.values();
+
     /** Current shape of current peace */
     private Shape pieceShape;
     /**
@@ -28,53 +67,30 @@ public class Model
      * second column - Y
      */
     private final int[][] coordinates;
+    /** State of random shape generator */
+    private long randomState;
+    /** Number of rotations 90 degrees to the right since shape was set (from 0 to 3) */
+    private int rotation = 0;
+
     /**
-     * 3D array which contains coordinates of every square of every peace on the board
+     * Constructor
+     * current shape is empty shape, random shape generator is seeded with current time
      */
-    private final int[][][] coordsTable;
+    public Model()
+    {
+        this(System.nanoTime());
+    }
 
     /**
      * Constructor
-     * current shape is empty shape
+     * current shape is empty shape, random shapes are generated from given seed,
+     * so the same seed always gives the same sequence of shapes (used by replays)
+     * @param seed random shape generator seed
      */
-    public Model()
+    public Model(long seed)
     {
+        randomState = seed;
         coordinates = new int[4][2];
-        coordsTable = new int[][][]
-                {
-                        //NoShape
-                        {
-                                {0, 0}, {0, 0}, {0, 0}, {0, 0}
-                        },
-                        //ZShape
-                        {
-                                {1, 0}, {0, 0}, {0, -1}, {-1, -1}
-                        },
-                        //SShape
-                        {
-                                {-1, 0}, {0, 0}, {0, -1}, {1, -1}
-                        },
-                        //LineShape
-                        {
-                                {-2, 0}, {-1, 0}, {0, 0}, {1, 0}
-                        },
-                        //TShape
-                        {
-                                {-1, 0}, {0, 0}, {1, 0}, {0, 1}
-                        },
-                        //SquareShape
-                        {
-                                {0, 0}, {1, 0}, {0, 1}, {1, 1}
-                        },
-                        //LShape
-                        {
-                                {-1, 0}, {0, 0}, {1, 0}, {1, -1}
-                        },
-                        //JShape
-                        {
-                                {1, 0}, {0, 0}, {-1, 0}, {-1, -1}
-                        }
-                };
         setPieceShape(Shape.EmptyShape);
     }
 
@@ -86,9 +102,32 @@ public class Model
     {
         for (int i = 0; i < 4; i++)
         {
-            System.arraycopy(coordsTable[pieceShape.ordinal()][i], 0, coordinates[i], 0, 2);
+            System.arraycopy(COORDS_TABLE[pieceShape.ordinal()][i], 0, coordinates[i], 0, 2);
         }
         this.pieceShape = pieceShape;
+        this.rotation = 0;
+    }
+
+    /**
+     * Restores piece saved in game snapshot
+     * @param pieceShape piece shape
+     * @param rotation number of rotations 90 degrees to the right (from 0 to 3)
+     * @param randomState state of random shape generator
+     */
+    public void restore(Shape pieceShape, int rotation, long randomState)
+    {
+        setPieceShape(pieceShape);
+        for (int r = 0; r < rotation && pieceShape != Shape.OShape; ++r)
+        {
+            for (int i = 0; i < 4; ++i)
+            {
+                int x = getX(i);
+                setX(i, -getY(i));
+                setY(i, x);
+            }
+        }
+        this.rotation = rotation;
+        this.randomState = randomState;
     }
 
     /**
@@ -140,15 +179,44 @@ public class Model
         return pieceShape;
     }
 
+    /**
+     * Get number of rotations since shape was set
+     * @return number of rotations 90 degrees to the right (from 0 to 3)
+     */
+    public int getRotation()
+    {
+        return rotation;
+    }
+
+    /**
+     * Get state of random shape generator
+     * @return random shape generator state
+     */
+    public long getRandomState()
+    {
+        return randomState;
+    }
+
     /**
      * Choosing random shape and setting it as current piece shape
      */
     public void setRandomShape()
     {
-        Random r = new Random();
-        int x = Math.abs(r.nextInt()) % 7 + 1;
-        Shape[] values = Shape.values();
-        setPieceShape(values[x]);
+        int x = (int) Long.remainderUnsigned(nextRandom(), 7) + 1;
+        setPieceShape(SHAPES[x]);
+    }
+
+    /**
+     * Next value of random shape generator (SplitMix64)
+     * @return random value
+     */
+    private long nextRandom()
+    {
+        randomState += 0x9E3779B97F4A7C15L;
+        long z = randomState;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
     }
 
     /**
@@ -179,20 +247,34 @@ public class Model
         return min;
     }
 
+    /**
+     * Get shape with given ordinal without copying Shape.values()
+     * @param ordinal shape ordinal
+     * @return shape
+     */
+    public static Shape shapeOf(int ordinal)
+    {
+        return SHAPES[ordinal];
+    }
+
     /**
      * Rotate piece 90 degrees to the right, if it is a square piece,
      * don;t do anything
-     * @return rotated piece
+     * rotated piece is written into given model (so rotating does not allocate),
+     * it continues random shape sequence of this piece
+     * @param result model to which rotated piece is written, it must not be this model
+     * @return rotated piece (result), or this model if it is a square piece
      */
-    public Model rotateRight()
+    public Model rotateRight(Model result)
     {
         if (pieceShape == Shape.OShape)
         {
             return this;
         }
 
-        Model result = new Model();
+        result.randomState = randomState;
         result.pieceShape = pieceShape;
+        result.rotation = (rotation + 1) % 4;
 
         for (int i = 0; i < 4; ++i)
         {
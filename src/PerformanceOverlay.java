@@ -0,0 +1,180 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+/**
+ * Performance overlay - frame and tick times, coalesced repaint requests, heap use and number of GCs
+ * values come from rolling windows of game metrics, text is formatted into reused char buffer
+ * and translucent background is prerendered, so drawing overlay does not allocate
+ */
+public class PerformanceOverlay
+{
+    /** Overlay font */
+    private static final Font FONT = new Font(Font.MONOSPACED, Font.PLAIN, 12);
+    /** Overlay background */
+    private static final Color BACKGROUND = new Color(0, 0, 0, 170);
+    /** Overlay text color */
+    private static final Color TEXT_COLOR = Color.green;
+    /** Number of text lines */
+    private static final int LINES = 5;
+    /** Line height (in pixels) */
+    private static final int LINE_HEIGHT = 14;
+    /** Overlay width (in pixels) */
+    private static final int WIDTH = 230;
+    /** Overlay height (in pixels) */
+    private static final int HEIGHT = LINES * LINE_HEIGHT + 6;
+
+    /** Prerendered background, filling with translucent color allocates in Java2D, copying image does not */
+    private final BufferedImage background = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+    /** Garbage collectors */
+    private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+    /** Number of GCs before overlay was created */
+    private final long startGcCount;
+    /** Text of current line */
+    private final char[] line = new char[64];
+    /** Length of current line */
+    private int length = 0;
+
+    /**
+     * Constructor, remembers current number of GCs and renders background
+     */
+    public PerformanceOverlay()
+    {
+        startGcCount = gcCount();
+        Graphics g = background.getGraphics();
+        g.setColor(BACKGROUND);
+        g.fillRect(0, 0, WIDTH, HEIGHT);
+        g.dispose();
+    }
+
+    /**
+     * Drawing overlay in top left corner
+     * @param g Graphics object
+     * @param metrics game metrics
+     */
+    public void paint(Graphics g, GameMetrics metrics)
+    {
+        g.drawImage(background, 0, 0, null);
+        g.setFont(FONT);
+        g.setColor(TEXT_COLOR);
+
+        RollingWindow paints = metrics.getRecentPaintTimes();
+        RollingWindow ticks = metrics.getRecentTickTimes();
+        Runtime runtime = Runtime.getRuntime();
+        int y = LINE_HEIGHT;
+
+        length = 0;
+        append("frame p50 ").appendMillis(paints.percentile(0.5)).append(" p99 ").appendMillis(paints.percentile(0.99));
+        drawLine(g, y);
+        y += LINE_HEIGHT;
+
+        length = 0;
+        append("tick  p50 ").appendMillis(ticks.percentile(0.5)).append(" p99 ").appendMillis(ticks.percentile(0.99));
+        drawLine(g, y);
+        y += LINE_HEIGHT;
+
+        length = 0;
+        append("repaints/frame ").appendHundredths(Math.round(metrics.getRecentRepaints().average() * 100));
+        drawLine(g, y);
+        y += LINE_HEIGHT;
+
+        length = 0;
+        append("heap ").append((runtime.totalMemory() - runtime.freeMemory()) >> 20)
+                .append(" / ").append(runtime.maxMemory() >> 20).append(" MB");
+        drawLine(g, y);
+        y += LINE_HEIGHT;
+
+        length = 0;
+        append("gc since start ").append(gcCount() - startGcCount);
+        drawLine(g, y);
+    }
+
+    /**
+     * Draws current line
+     * @param g Graphics object
+     * @param y baseline y coordinate
+     */
+    private void drawLine(Graphics g, int y)
+    {
+        g.drawChars(line, 0, length, 4, y);
+    }
+
+    /**
+     * Appends text to current line
+     * @param text text
+     * @return this overlay
+     */
+    private PerformanceOverlay append(String text)
+    {
+        int end = Math.min(line.length, length + text.length());
+        text.getChars(0, end - length, line, length);
+        length = end;
+        return this;
+    }
+
+    /**
+     * Appends number to current line
+     * @param value number (not negative)
+     * @return this overlay
+     */
+    private PerformanceOverlay append(long value)
+    {
+        int digits = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10)
+        {
+            ++digits;
+        }
+        if (length + digits > line.length)
+        {
+            return this;
+        }
+        for (int i = length + digits - 1; i >= length; --i)
+        {
+            line[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        length += digits;
+        return this;
+    }
+
+    /**
+     * Appends number with two decimal places to current line
+     * @param hundredths number multiplied by 100 (not negative)
+     * @return this overlay
+     */
+    private PerformanceOverlay appendHundredths(long hundredths)
+    {
+        append(hundredths / 100).append(".");
+        if (hundredths % 100 < 10)
+        {
+            append("0");
+        }
+        return append(hundredths % 100);
+    }
+
+    /**
+     * Appends duration in milliseconds with two decimal places to current line
+     * @param nanos duration (in nanoseconds)
+     * @return this overlay
+     */
+    private PerformanceOverlay appendMillis(long nanos)
+    {
+        return appendHundredths(nanos / 10_000).append(" ms");
+    }
+
+    /**
+     * Number of GCs of all collectors
+     * @return number of GCs
+     */
+    private long gcCount()
+    {
+        long count = 0;
+        for (int i = 0; i < collectors.size(); ++i)
+        {
+            count += Math.max(0, collectors.get(i).getCollectionCount());
+        }
+        return count;
+    }
+}
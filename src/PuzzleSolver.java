@@ -0,0 +1,721 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Puzzle solver - finds placements of fixed sequence of pieces on given board,
+ * which clear as many lines as possible or which clear whole board (perfect clear)
+ * beam search: every placement of next piece is tried on every board of the beam,
+ * boards are expanded in parallel, duplicate boards are merged and only best boards stay in the beam
+ * placements are simulated the same way as Controller moves pieces: piece is rotated at spawn position
+ * (with the same wall kicks), moved left or right and dropped, so solution can be played by Controller#place
+ */
+public class PuzzleSolver implements Closeable
+{
+    /** Default number of boards kept after every piece */
+    public static final int DEFAULT_BEAM_WIDTH = 256;
+    /** Weight of cleared lines in board evaluation */
+    private static final double LINES_WEIGHT = 1.0;
+    /** Weight of sum of column heights */
+    private static final double HEIGHT_WEIGHT = -0.51;
+    /** Weight of empty squares covered by other squares */
+    private static final double HOLES_WEIGHT = -0.36;
+    /** Weight of sum of height differences of neighbour columns */
+    private static final double BUMPINESS_WEIGHT = -0.18;
+    /** Maximal number of placements of one piece (4 rotations, at most 10 columns each on standard board) */
+    private static final int MAX_PLACEMENTS = 40;
+    /** X coordinates of squares, index is shape ordinal, rotation and square number */
+    private static final int[][][] SQUARE_X = new int[8][4][4];
+    /** Y coordinates of squares, index is shape ordinal, rotation and square number */
+    private static final int[][][] SQUARE_Y = new int[8][4][4];
+    /** Minimal Y coordinate of not rotated shape, used for spawn position */
+    private static final int[] MIN_Y = new int[8];
+
+    static
+    {
+        for (int shape = 0; shape < 8; ++shape)
+        {
+            Model piece = new Model(0);
+            piece.setPieceShape(Model.shapeOf(shape));
+            MIN_Y[shape] = piece.minValueY();
+            for (int rotation = 0; rotation < 4; ++rotation)
+            {
+                for (int i = 0; i < 4; ++i)
+                {
+                    SQUARE_X[shape][rotation][i] = piece.getX(i);
+                    SQUARE_Y[shape][rotation][i] = piece.getY(i);
+                }
+                piece = piece.rotateRight(new Model(0));
+            }
+        }
+    }
+
+    /**
+     * Solver goal
+     */
+    public enum Goal
+    {
+        /** Clear as many lines as possible with all pieces */
+        MAX_LINES,
+        /** Clear whole board with as few pieces as possible */
+        PERFECT_CLEAR
+    }
+
+    /** Board width (in squares) */
+    private final int boardWidth;
+    /** Board height (in squares) */
+    private final int boardHeight;
+    /** Number of boards kept after every piece */
+    private final int beamWidth;
+    /** Number of worker threads */
+    private final int threads;
+    /** Worker threads */
+    private final ExecutorService workers;
+
+    /**
+     * Constructor
+     * @param boardWidth board width (in squares), at most 31
+     * @param boardHeight board height (in squares)
+     * @param beamWidth number of boards kept after every piece
+     * @param threads number of worker threads
+     */
+    public PuzzleSolver(int boardWidth, int boardHeight, int beamWidth, int threads)
+    {
+        if (boardWidth > 31)
+        {
+            throw new IllegalArgumentException("Board is too wide: " + boardWidth);
+        }
+        this.boardWidth = boardWidth;
+        this.boardHeight = boardHeight;
+        this.beamWidth = beamWidth;
+        this.threads = threads;
+        this.workers = Executors.newFixedThreadPool(threads, task ->
+        {
+            Thread thread = new Thread(task, "puzzle-solver");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Finds placements of pieces
+     * @param board starting board, index is y * boardWidth + x, y = 0 is bottom line
+     * @param pieces pieces in order in which they come, first one is current piece
+     * @param goal solver goal
+     * @return best found solution, for perfect clear goal null if board cannot be cleared
+     */
+    public Solution solve(Model.Shape[] board, Model.Shape[] pieces, Goal goal)
+    {
+        long startNanos = System.nanoTime();
+        int[] rows = new int[boardHeight];
+        for (int i = 0; i < board.length; ++i)
+        {
+            if (board[i] != Model.Shape.EmptyShape)
+            {
+                rows[i / boardWidth] |= 1 << (i % boardWidth);
+            }
+        }
+
+        List<Node> beam = new ArrayList<>();
+        beam.add(new Node(rows, 0, null, 0, 0, 0));
+        long expanded = 0;
+        for (int depth = 0; depth < pieces.length; ++depth)
+        {
+            List<Node> children = expand(beam, pieces[depth].ordinal());
+            expanded += children.size();
+            if (children.isEmpty())
+            {
+                break;
+            }
+            if (goal == Goal.PERFECT_CLEAR)
+            {
+                for (Node child : children)
+                {
+                    if (child.lines > 0 && child.isEmpty())
+                    {
+                        return new Solution(child, expanded, System.nanoTime() - startNanos);
+                    }
+                }
+            }
+            children.sort((a, b) -> Double.compare(b.score, a.score));
+            beam = children.size() > beamWidth ? new ArrayList<>(children.subList(0, beamWidth)) : children;
+        }
+
+        if (goal == Goal.PERFECT_CLEAR)
+        {
+            return null;
+        }
+        Node best = beam.get(0);
+        for (Node node : beam)
+        {
+            if (node.lines > best.lines)
+            {
+                best = node;
+            }
+        }
+        return new Solution(best, expanded, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Stops worker threads
+     */
+    @Override
+    public void close()
+    {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Expands every board of the beam by every placement of the piece, beam is split between workers,
+     * boards are merged in beam order, so result does not depend on number of threads
+     * @param beam boards
+     * @param shape shape ordinal of placed piece
+     * @return children without duplicate boards
+     */
+    private List<Node> expand(List<Node> beam, int shape)
+    {
+        int chunk = (beam.size() + threads - 1) / threads;
+        List<Future<List<Node>>> parts = new ArrayList<>();
+        for (int from = 0; from < beam.size(); from += chunk)
+        {
+            List<Node> parents = beam.subList(from, Math.min(beam.size(), from + chunk));
+            parts.add(workers.submit(() ->
+            {
+                List<Node> children = new ArrayList<>(parents.size() * MAX_PLACEMENTS);
+                for (Node parent : parents)
+                {
+                    expand(parent, shape, children);
+                }
+                return children;
+            }));
+        }
+
+        List<List<Node>> expanded = new ArrayList<>();
+        int total = 0;
+        for (Future<List<Node>> part : parts)
+        {
+            expanded.add(await(part));
+            total += expanded.get(expanded.size() - 1).size();
+        }
+
+        Map<Node, Node> unique = new HashMap<>(2 * total);
+        List<Node> result = new ArrayList<>(total);
+        for (List<Node> children : expanded)
+        {
+            for (Node child : children)
+            {
+                Node other = unique.putIfAbsent(child, child);
+                if (other == null)
+                {
+                    result.add(child);
+                }
+                else if (child.lines > other.lines)
+                {
+                    other.replaceBy(child);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds every placement of the piece on parent's board to the list
+     * @param parent board
+     * @param shape shape ordinal of placed piece
+     * @param children list of children
+     */
+    private void expand(Node parent, int shape, List<Node> children)
+    {
+        int spawnX = boardWidth / 2 + 1;
+        int spawnY = boardHeight - 1 + MIN_Y[shape];
+        if (!fits(parent.rows, shape, 0, spawnX, spawnY))
+        {
+            return;
+        }
+
+        int[] heights = new int[boardWidth];
+        columnHeights(parent.rows, heights);
+        int rotations = shape == Model.Shape.OShape.ordinal() ? 1 : 4;
+        for (int rotation = 0; rotation < rotations; ++rotation)
+        {
+            int x = spawnX;
+            int reached = 0;
+            for (int i = 0; i < rotation; ++i)
+            {
+                int newX = rotate(parent.rows, shape, i, x, spawnY);
+                if (newX == Integer.MIN_VALUE)
+                {
+                    break;
+                }
+                x = newX;
+                ++reached;
+            }
+            if (reached < rotation)
+            {
+                continue;
+            }
+
+            drop(parent, heights, shape, rotation, x, spawnY, children);
+            for (int left = x - 1; fits(parent.rows, shape, rotation, left, spawnY); --left)
+            {
+                drop(parent, heights, shape, rotation, left, spawnY, children);
+            }
+            for (int right = x + 1; fits(parent.rows, shape, rotation, right, spawnY); ++right)
+            {
+                drop(parent, heights, shape, rotation, right, spawnY, children);
+            }
+        }
+    }
+
+    /**
+     * Rotates piece 90 degrees to the right the same way as Controller does,
+     * piece next to a wall is moved away from it
+     * @param rows board
+     * @param shape shape ordinal
+     * @param rotation current rotation
+     * @param x piece x coordinate
+     * @param y piece y coordinate
+     * @return x coordinate of rotated piece, Integer.MIN_VALUE if piece cannot be rotated
+     */
+    private int rotate(int[] rows, int shape, int rotation, int x, int y)
+    {
+        int newRotation = rotation + 1;
+        for (int i = 0; i < 4; ++i)
+        {
+            int squareX = x + SQUARE_X[shape][newRotation][i];
+            int squareY = y - SQUARE_Y[shape][newRotation][i];
+            int kick = squareX == -2 ? 2 : squareX == -1 ? 1
+                    : squareX == boardWidth ? -1 : squareX == boardWidth + 1 ? -2 : 0;
+            if (kick != 0)
+            {
+                return fits(rows, shape, newRotation, x + kick, y) ? x + kick : Integer.MIN_VALUE;
+            }
+            if (squareX < -2 || squareX > boardWidth + 1 || squareY < 0 || squareY >= boardHeight)
+            {
+                return Integer.MIN_VALUE;
+            }
+            if ((rows[squareY] & (1 << squareX)) != 0)
+            {
+                return Integer.MIN_VALUE;
+            }
+        }
+        return x;
+    }
+
+    /**
+     * Check if piece fits on the board at given coordinates
+     * @param rows board
+     * @param shape shape ordinal
+     * @param rotation piece rotation
+     * @param x piece x coordinate
+     * @param y piece y coordinate
+     * @return true if all squares are inside the board and empty
+     */
+    private boolean fits(int[] rows, int shape, int rotation, int x, int y)
+    {
+        for (int i = 0; i < 4; ++i)
+        {
+            int squareX = x + SQUARE_X[shape][rotation][i];
+            int squareY = y - SQUARE_Y[shape][rotation][i];
+            if (squareX < 0 || squareX >= boardWidth || squareY < 0 || squareY >= boardHeight)
+            {
+                return false;
+            }
+            if ((rows[squareY] & (1 << squareX)) != 0)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Drops piece, locks it, removes full lines and adds resulting board to the list,
+     * piece above all columns lands on the highest of them, so landing position is computed from column heights
+     * @param parent board
+     * @param heights column heights of parent's board
+     * @param shape shape ordinal
+     * @param rotation piece rotation
+     * @param x piece x coordinate
+     * @param y piece y coordinate
+     * @param children list of children
+     */
+    private void drop(Node parent, int[] heights, int shape, int rotation, int x, int y, List<Node> children)
+    {
+        int landing = 0;
+        for (int i = 0; i < 4; ++i)
+        {
+            landing = Math.max(landing, heights[x + SQUARE_X[shape][rotation][i]] + SQUARE_Y[shape][rotation][i]);
+        }
+        if (landing <= y)
+        {
+            y = landing;
+        }
+        else
+        {
+            while (fits(parent.rows, shape, rotation, x, y - 1))
+            {
+                --y;
+            }
+        }
+
+        int[] rows = parent.rows.clone();
+        for (int i = 0; i < 4; ++i)
+        {
+            rows[y - SQUARE_Y[shape][rotation][i]] |= 1 << (x + SQUARE_X[shape][rotation][i]);
+        }
+
+        int full = (1 << boardWidth) - 1;
+        int kept = 0;
+        for (int row : rows)
+        {
+            if (row != full)
+            {
+                rows[kept++] = row;
+            }
+        }
+        int lines = rows.length - kept;
+        while (kept < rows.length)
+        {
+            rows[kept++] = 0;
+        }
+
+        Node child = new Node(rows, parent.lines + lines, parent, shape, rotation, x);
+        child.score = evaluate(child);
+        children.add(child);
+    }
+
+    /**
+     * Evaluation of board, higher is better
+     * @param node board
+     * @return weighted sum of cleared lines, column heights, holes and bumpiness
+     */
+    private double evaluate(Node node)
+    {
+        int[] heights = new int[boardWidth];
+        int holes = columnHeights(node.rows, heights);
+
+        int height = 0;
+        int bumpiness = 0;
+        for (int x = 0; x < boardWidth; ++x)
+        {
+            height += heights[x];
+            if (x > 0)
+            {
+                bumpiness += Math.abs(heights[x] - heights[x - 1]);
+            }
+        }
+        return LINES_WEIGHT * node.lines + HEIGHT_WEIGHT * height
+                + HOLES_WEIGHT * holes + BUMPINESS_WEIGHT * bumpiness;
+    }
+
+    /**
+     * Computes height of every column - number of lines up to its highest square
+     * @param rows board
+     * @param heights column heights, filled by this method
+     * @return number of holes - empty squares below highest square of their column
+     */
+    private int columnHeights(int[] rows, int[] heights)
+    {
+        int top = boardHeight - 1;
+        while (top >= 0 && rows[top] == 0)
+        {
+            --top;
+        }
+        int covered = 0;
+        int holes = 0;
+        for (int y = top; y >= 0; --y)
+        {
+            int row = rows[y];
+            holes += Integer.bitCount(covered & ~row);
+            int uncovered = row & ~covered;
+            while (uncovered != 0)
+            {
+                heights[Integer.numberOfTrailingZeros(uncovered)] = y + 1;
+                uncovered &= uncovered - 1;
+            }
+            covered |= row;
+        }
+        return holes;
+    }
+
+    /**
+     * Waits for worker's result
+     * @param part worker's task
+     * @return children expanded by the worker
+     */
+    private static List<Node> await(Future<List<Node>> part)
+    {
+        try
+        {
+            return part.get();
+        }
+        catch (ExecutionException e)
+        {
+            throw new IllegalStateException("Puzzle solver failed", e.getCause());
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Puzzle solver interrupted", e);
+        }
+    }
+
+    /**
+     * Reads board from text file, first line is top line of the board,
+     * '.' is empty square, shape letter (Z, S, I, T, O, L, J) is square of that shape, other characters are Z squares
+     * file can have less lines than board, they are at the bottom then
+     * @param file board file
+     * @param boardWidth board width (in squares)
+     * @param boardHeight board height (in squares)
+     * @return board, index is y * boardWidth + x, y = 0 is bottom line
+     * @throws IOException if file cannot be read or it is larger than board
+     */
+    public static Model.Shape[] readBoard(Path file, int boardWidth, int boardHeight) throws IOException
+    {
+        List<String> lines = Files.readAllLines(file);
+        if (lines.size() > boardHeight)
+        {
+            throw new IOException("Board has more than " + boardHeight + " lines: " + file);
+        }
+        Model.Shape[] board = new Model.Shape[boardWidth * boardHeight];
+        Arrays.fill(board, Model.Shape.EmptyShape);
+        for (int i = 0; i < lines.size(); ++i)
+        {
+            String line = lines.get(i);
+            int y = lines.size() - 1 - i;
+            for (int x = 0; x < Math.min(boardWidth, line.length()); ++x)
+            {
+                char square = line.charAt(x);
+                if (square != '.' && square != ' ')
+                {
+                    int shape = "ZSITOLJ".indexOf(Character.toUpperCase(square)) + 1;
+                    board[y * boardWidth + x] = Model.shapeOf(shape > 0 ? shape : 1);
+                }
+            }
+        }
+        return board;
+    }
+
+    /**
+     * Board in the beam - result of one placement
+     * nodes are equal when they have the same board, so duplicates can be merged
+     */
+    private static final class Node
+    {
+        /** Board lines as bit masks, bit x of rows[y] is square (x, y) */
+        private final int[] rows;
+        /** Hash of board */
+        private final int hash;
+        /** Lines cleared since start */
+        private int lines;
+        /** Board before this placement, null for starting board */
+        private Node parent;
+        /** Shape ordinal of placed piece */
+        private int shape;
+        /** Number of rotations of placed piece */
+        private int rotation;
+        /** X coordinate of placed piece */
+        private int x;
+        /** Board evaluation */
+        private double score;
+
+        /**
+         * Constructor
+         * @param rows board lines
+         * @param lines lines cleared since start
+         * @param parent board before placement
+         * @param shape shape ordinal of placed piece
+         * @param rotation number of rotations of placed piece
+         * @param x x coordinate of placed piece
+         */
+        Node(int[] rows, int lines, Node parent, int shape, int rotation, int x)
+        {
+            this.rows = rows;
+            this.hash = Arrays.hashCode(rows);
+            this.lines = lines;
+            this.parent = parent;
+            this.shape = shape;
+            this.rotation = rotation;
+            this.x = x;
+        }
+
+        /**
+         * Takes path of other node with the same board, which cleared more lines
+         * @param other other node
+         */
+        void replaceBy(Node other)
+        {
+            lines = other.lines;
+            parent = other.parent;
+            shape = other.shape;
+            rotation = other.rotation;
+            x = other.x;
+            score = other.score;
+        }
+
+        /**
+         * Check if board is empty
+         * @return true if there are no squares
+         */
+        boolean isEmpty()
+        {
+            for (int row : rows)
+            {
+                if (row != 0)
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            return o instanceof Node && hash == ((Node) o).hash && Arrays.equals(rows, ((Node) o).rows);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+    }
+
+    /**
+     * Found placements - for every piece number of rotations and x coordinate where it's dropped
+     */
+    public static final class Solution
+    {
+        /** Shapes of placed pieces */
+        private final Model.Shape[] shapes;
+        /** Number of rotations of every piece */
+        private final int[] rotations;
+        /** X coordinate of every piece */
+        private final int[] columns;
+        /** Number of cleared lines */
+        private final int lines;
+        /** True if board is empty after last piece */
+        private final boolean perfectClear;
+        /** Number of expanded boards */
+        private final long expanded;
+        /** Solve time (in nanoseconds) */
+        private final long solveNanos;
+
+        /**
+         * Constructor - collects placements from last node to starting board
+         * @param last board after last placement
+         * @param expanded number of expanded boards
+         * @param solveNanos solve time (in nanoseconds)
+         */
+        private Solution(Node last, long expanded, long solveNanos)
+        {
+            int count = 0;
+            for (Node node = last; node.parent != null; node = node.parent)
+            {
+                ++count;
+            }
+            this.shapes = new Model.Shape[count];
+            this.rotations = new int[count];
+            this.columns = new int[count];
+            Node node = last;
+            for (int i = count - 1; i >= 0; --i)
+            {
+                shapes[i] = Model.shapeOf(node.shape);
+                rotations[i] = node.rotation;
+                columns[i] = node.x;
+                node = node.parent;
+            }
+            this.lines = last.lines;
+            this.perfectClear = last.isEmpty();
+            this.expanded = expanded;
+            this.solveNanos = solveNanos;
+        }
+
+        /**
+         * Number of placed pieces
+         * @return number of placements
+         */
+        public int size()
+        {
+            return rotations.length;
+        }
+
+        /**
+         * Shape of placed piece
+         * @param index piece number
+         * @return shape
+         */
+        public Model.Shape getShape(int index)
+        {
+            return shapes[index];
+        }
+
+        /**
+         * Number of rotations of placed piece
+         * @param index piece number
+         * @return number of rotations 90 degrees to the right at spawn position
+         */
+        public int getRotations(int index)
+        {
+            return rotations[index];
+        }
+
+        /**
+         * X coordinate of placed piece
+         * @param index piece number
+         * @return x coordinate from which piece is dropped
+         */
+        public int getColumn(int index)
+        {
+            return columns[index];
+        }
+
+        /**
+         * Number of cleared lines getter
+         * @return number of cleared lines
+         */
+        public int getLines()
+        {
+            return lines;
+        }
+
+        /**
+         * Check if board is empty after last piece
+         * @return true for perfect clear
+         */
+        public boolean isPerfectClear()
+        {
+            return perfectClear;
+        }
+
+        /**
+         * Number of expanded boards getter
+         * @return number of boards created by all placements
+         */
+        public long getExpanded()
+        {
+            return expanded;
+        }
+
+        /**
+         * Solve time getter
+         * @return solve time (in nanoseconds)
+         */
+        public long getSolveNanos()
+        {
+            return solveNanos;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Replay - seed of random shape generator and one player action per logic tick,
+ * game played again from the same seed with the same actions gives the same frames
+ */
+public class Replay
+{
+    /** Player does nothing in this tick */
+    public static final byte NO_ACTION = 0;
+    /** Piece is moved one square left */
+    public static final byte MOVE_LEFT = 1;
+    /** Piece is moved one square right */
+    public static final byte MOVE_RIGHT = 2;
+    /** Piece is rotated 90 degrees to the right */
+    public static final byte ROTATE_RIGHT = 3;
+    /** Piece is moved one line down */
+    public static final byte ONE_LINE_DOWN = 4;
+    /** Piece is dropped down */
+    public static final byte DROP_DOWN = 5;
+
+    /** Magic number at the beginning of replay file */
+    private static final int MAGIC = 0x54524550; //TREP
+
+    /** Random shape generator seed */
+    private final long seed;
+    /** Player action in every tick */
+    private final byte[] actions;
+
+    /**
+     * Constructor
+     * @param seed random shape generator seed
+     * @param actions player action in every tick
+     */
+    public Replay(long seed, byte[] actions)
+    {
+        this.seed = seed;
+        this.actions = actions;
+    }
+
+    /**
+     * Plays bot game and records it, bot makes random moves,
+     * recording ends when game is over or after given number of ticks
+     * @param seed seed of random shape generator and of bot
+     * @param maxTicks maximal number of ticks
+     * @param boardWidth board width (in squares)
+     * @param boardHeight board height (in squares)
+     * @param trainingRecorder recorder of locked pieces, can be null
+     * @param scoreBoard leaderboard, to which score is added if game is over, can be null
+     * @return recorded replay
+     * @throws IOException if score cannot be added to leaderboard
+     */
+    public static Replay recordBot(long seed, int maxTicks, int boardWidth, int boardHeight,
+                                   TrainingRecorder trainingRecorder, ScoreBoard scoreBoard) throws IOException
+    {
+        Random random = new Random(seed);
+        byte[] actions = new byte[maxTicks];
+        Controller game = new Controller(new Model(seed), boardWidth, boardHeight);
+        game.setTrainingRecorder(trainingRecorder);
+        game.start();
+
+        int ticks = 0;
+        while (ticks < maxTicks && game.isStarted())
+        {
+            actions[ticks] = (byte) random.nextInt(ROTATE_RIGHT + 1);
+            apply(game, actions[ticks]);
+            game.gameAction();
+            ++ticks;
+        }
+        if (scoreBoard != null && !game.isStarted())
+        {
+            scoreBoard.add(game.getScore(), game.getGameSeed());
+        }
+        return new Replay(seed, Arrays.copyOf(actions, ticks));
+    }
+
+    /**
+     * Reads replay from file
+     * @param file replay file
+     * @return replay
+     * @throws IOException if file cannot be read or it is not a replay file
+     */
+    public static Replay load(Path file) throws IOException
+    {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file))))
+        {
+            if (in.readInt() != MAGIC)
+            {
+                throw new IOException("Not a replay file: " + file);
+            }
+            long seed = in.readLong();
+            byte[] actions = new byte[in.readInt()];
+            in.readFully(actions);
+            return new Replay(seed, actions);
+        }
+    }
+
+    /**
+     * Writes replay to file
+     * @param file replay file
+     * @throws IOException if file cannot be written
+     */
+    public void save(Path file) throws IOException
+    {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file))))
+        {
+            out.writeInt(MAGIC);
+            out.writeLong(seed);
+            out.writeInt(actions.length);
+            out.write(actions);
+        }
+    }
+
+    /**
+     * Number of ticks getter
+     * @return number of recorded ticks
+     */
+    public int getTicks()
+    {
+        return actions.length;
+    }
+
+    /**
+     * Creates new started game, which can be played with this replay
+     * @param boardWidth board width (in squares)
+     * @param boardHeight board height (in squares)
+     * @return started game without its own panel and timer
+     */
+    public Controller newGame(int boardWidth, int boardHeight)
+    {
+        Controller game = new Controller(new Model(seed), boardWidth, boardHeight);
+        game.start();
+        return game;
+    }
+
+    /**
+     * Plays one recorded tick - player action and then gameAction
+     * @param game game created by newGame
+     * @param tick tick number
+     */
+    public void playTick(Controller game, int tick)
+    {
+        apply(game, actions[tick]);
+        game.gameAction();
+    }
+
+    /**
+     * Applies player action to the game, actions are ignored from lock of current piece until next piece is created
+     * @param game game
+     * @param action one of action constants
+     */
+    public static void apply(Controller game, byte action)
+    {
+        if (game.isFallingFinished())
+        {
+            return;
+        }
+        switch (action)
+        {
+            case MOVE_LEFT:
+                game.moveLeft();
+                break;
+            case MOVE_RIGHT:
+                game.moveRight();
+                break;
+            case ROTATE_RIGHT:
+                game.rotateRight();
+                break;
+            case ONE_LINE_DOWN:
+                game.oneLineDown();
+                break;
+            case DROP_DOWN:
+                game.dropDown();
+                break;
+            default:
+                break;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+import java.util.Arrays;
+
+/**
+ * Rolling window of last recorded values, e.g. durations of last frames
+ * adding values and computing percentiles does not allocate,
+ * it should be used from one thread only
+ */
+public class RollingWindow
+{
+    /** Last values, oldest value is overwritten when window is full */
+    private final long[] values;
+    /** Working array for computing percentiles */
+    private final long[] sorted;
+    /** Index of slot for next value */
+    private int next = 0;
+    /** Number of values in window */
+    private int size = 0;
+
+    /**
+     * Constructor
+     * @param capacity number of values kept in window
+     */
+    public RollingWindow(int capacity)
+    {
+        values = new long[capacity];
+        sorted = new long[capacity];
+    }
+
+    /**
+     * Adds value, oldest value is removed if window is full
+     * @param value value
+     */
+    public void add(long value)
+    {
+        values[next] = value;
+        next = (next + 1) % values.length;
+        if (size < values.length)
+        {
+            ++size;
+        }
+    }
+
+    /**
+     * Number of values getter
+     * @return number of values in window
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Value below which given part of values in window is
+     * @param quantile quantile from 0 to 1 (e.g. 0.99 for 99th percentile)
+     * @return value at quantile, 0 if window is empty
+     */
+    public long percentile(double quantile)
+    {
+        if (size == 0)
+        {
+            return 0;
+        }
+        System.arraycopy(values, 0, sorted, 0, size);
+        Arrays.sort(sorted, 0, size);
+        int index = (int) Math.ceil(quantile * size) - 1;
+        return sorted[Math.max(0, Math.min(size - 1, index))];
+    }
+
+    /**
+     * Average of values in window
+     * @return average, 0 if window is empty
+     */
+    public double average()
+    {
+        if (size == 0)
+        {
+            return 0;
+        }
+        long sum = 0;
+        for (int i = 0; i < size; ++i)
+        {
+            sum += values[i];
+        }
+        return (double) sum / size;
+    }
+}
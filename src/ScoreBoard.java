@@ -0,0 +1,795 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persistent leaderboard - every score is appended to score log,
+ * log is periodically compacted into memory-mapped index, which contains all scores twice:
+ * sorted by score (for top-N and rank queries) and sorted by seed (for best score of seed)
+ * scores added since last compaction are kept in sorted in-memory table, so all queries are logarithmic
+ * compaction runs in background thread, inserts go to new in-memory table meanwhile,
+ * every compaction writes index file with next generation number, so mapped index is never replaced
+ */
+public class ScoreBoard implements Closeable
+{
+    /** Magic number at the beginning of index file */
+    private static final int INDEX_MAGIC = 0x5453434F; //TSCO
+    /** Index header size: magic (int), padding (int), number of entries (long), number of indexed log records (long) */
+    private static final int INDEX_HEADER_SIZE = 24;
+    /** Record size: score (int), seed (long), time (long) */
+    private static final int RECORD_SIZE = 20;
+    /** Number of scores in in-memory table which starts compaction */
+    private static final int COMPACTION_THRESHOLD = 65536;
+
+    /** Directory with score log and index files */
+    private final Path directory;
+    /** Current index file, null if there is no index yet */
+    private Path indexFile;
+    /** Highest generation number of index files, next compaction writes the following one */
+    private long generation = 0;
+    /** Score log channel (append only) */
+    private final FileChannel log;
+    /** Buffer for one log record */
+    private final ByteBuffer logRecord = ByteBuffer.allocate(RECORD_SIZE);
+    /** Number of records in score log */
+    private long logRecords;
+    /** Current index */
+    private Index index;
+    /** Scores added since last compaction */
+    private MemTable active;
+    /** Scores which are being compacted, null if compaction is not running */
+    private MemTable compacting;
+
+    /**
+     * Constructor - opens score log and index in given directory, scores missing in index are read from log,
+     * newest valid index file is used, damaged index is ignored, so it's rebuilt from the log,
+     * other index files are deleted
+     * @param directory directory with "scores.log" and index files "scores.[generation].idx"
+     * @throws IOException if files cannot be opened
+     */
+    public ScoreBoard(Path directory) throws IOException
+    {
+        Files.createDirectories(directory);
+        this.directory = directory;
+        this.log = FileChannel.open(directory.resolve("scores.log"), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.logRecords = log.size() / RECORD_SIZE;
+
+        List<Long> generations = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "scores.*.idx"))
+        {
+            for (Path file : files)
+            {
+                String name = file.getFileName().toString();
+                try
+                {
+                    generations.add(Long.parseLong(name.substring("scores.".length(),
+                            name.length() - ".idx".length())));
+                }
+                catch (NumberFormatException e)
+                {
+                    //not an index file
+                }
+            }
+        }
+        generations.sort(Collections.reverseOrder());
+        for (long number : generations)
+        {
+            Path file = indexFile(number);
+            generation = Math.max(generation, number);
+            if (index == null)
+            {
+                index = Index.open(file, logRecords);
+                if (index != null)
+                {
+                    indexFile = file;
+                    continue;
+                }
+                System.err.println("Score index " + file.getFileName() + " is damaged, it is rebuilt from score log");
+            }
+            deleteQuietly(file);
+        }
+        if (index == null)
+        {
+            index = new Index(null, 0, 0);
+        }
+
+        log.position(index.coveredLogRecords * RECORD_SIZE);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(log), 1 << 16));
+        active = MemTable.read(in, logRecords - index.coveredLogRecords);
+        log.position(logRecords * RECORD_SIZE);
+        startCompactionIfNeeded();
+    }
+
+    /**
+     * Adds score
+     * @param score player's score
+     * @param seed random shape generator seed of the game
+     * @throws IOException if score cannot be written to log
+     */
+    public synchronized void add(int score, long seed) throws IOException
+    {
+        long time = System.currentTimeMillis();
+        logRecord.clear();
+        logRecord.putInt(score).putLong(seed).putLong(time).flip();
+        while (logRecord.hasRemaining())
+        {
+            log.write(logRecord);
+        }
+        ++logRecords;
+        active.add(score, seed, time);
+        startCompactionIfNeeded();
+    }
+
+    /**
+     * Best scores
+     * @param n maximal number of entries
+     * @return entries with best scores, best first
+     */
+    public synchronized List<Entry> top(int n)
+    {
+        List<Entry> result = new ArrayList<>(n);
+        int[] positions = new int[3];
+        while (result.size() < n)
+        {
+            int best = -1;
+            int bestScore = Integer.MIN_VALUE;
+            for (int source = 0; source < 3; ++source)
+            {
+                if (positions[source] < size(source) && scoreAt(source, positions[source]) > bestScore)
+                {
+                    best = source;
+                    bestScore = scoreAt(source, positions[source]);
+                }
+            }
+            if (best < 0)
+            {
+                break;
+            }
+            result.add(entryAt(best, positions[best]++));
+        }
+        return result;
+    }
+
+    /**
+     * Rank which given score would have
+     * @param score score
+     * @return 1 + number of stored scores better than given score
+     */
+    public synchronized long rankOf(int score)
+    {
+        long better = index.countBetterThan(score) + active.countBetterThan(score);
+        if (compacting != null)
+        {
+            better += compacting.countBetterThan(score);
+        }
+        return better + 1;
+    }
+
+    /**
+     * Best score of games with given seed
+     * @param seed random shape generator seed
+     * @return best score, -1 if there is no game with this seed
+     */
+    public synchronized int bestForSeed(long seed)
+    {
+        int best = Math.max(index.bestForSeed(seed), active.bestForSeed(seed));
+        if (compacting != null)
+        {
+            best = Math.max(best, compacting.bestForSeed(seed));
+        }
+        return best;
+    }
+
+    /**
+     * Number of stored scores
+     * @return number of scores
+     */
+    public synchronized long size()
+    {
+        return logRecords;
+    }
+
+    /**
+     * Forces score log to disk and closes it, running compaction is finished first
+     * @throws IOException if log cannot be closed
+     */
+    @Override
+    public synchronized void close() throws IOException
+    {
+        while (compacting != null)
+        {
+            try
+            {
+                wait();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        log.force(false);
+        log.close();
+    }
+
+    /**
+     * Starts compaction thread if in-memory table is big enough and no compaction is running
+     */
+    private void startCompactionIfNeeded()
+    {
+        if (compacting != null || active.size < COMPACTION_THRESHOLD)
+        {
+            return;
+        }
+        compacting = active;
+        active = new MemTable();
+        Index base = index;
+        MemTable table = compacting;
+        long covered = logRecords;
+        Path file = indexFile(++generation);
+
+        Thread thread = new Thread(() -> compact(base, table, covered, file), "score-compaction");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Merges index with in-memory table into new index file of next generation,
+     * file is written under temporary name, forced to disk and then atomically renamed,
+     * old index file is deleted after new index is used (some systems do not delete mapped file,
+     * then it's deleted when leaderboard is opened next time)
+     * @param base current index
+     * @param table in-memory table which is merged
+     * @param covered number of log records included in new index
+     * @param file new index file
+     */
+    private void compact(Index base, MemTable table, long covered, Path file)
+    {
+        Index merged = null;
+        try
+        {
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            Index.write(tmp, base, table, covered);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            merged = Index.open(file, covered);
+        }
+        catch (IOException e)
+        {
+            System.err.println("Score compaction failed: " + e.getMessage());
+        }
+
+        synchronized (this)
+        {
+            if (merged != null)
+            {
+                index = merged;
+                if (indexFile != null)
+                {
+                    deleteQuietly(indexFile);
+                }
+                indexFile = file;
+            }
+            else
+            {
+                //scores stay in memory, they are still in the log
+                for (int i = 0; i < table.size; ++i)
+                {
+                    active.add(table.scores[i], table.seeds[i], table.times[i]);
+                }
+            }
+            compacting = null;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Index file of given generation
+     * @param number generation number
+     * @return index file
+     */
+    private Path indexFile(long number)
+    {
+        return directory.resolve("scores." + number + ".idx");
+    }
+
+    /**
+     * Deletes old index file, file which cannot be deleted now is deleted when leaderboard is opened next time
+     * @param file index file
+     */
+    private static void deleteQuietly(Path file)
+    {
+        try
+        {
+            Files.deleteIfExists(file);
+        }
+        catch (IOException e)
+        {
+            //still mapped on systems which do not delete mapped files
+        }
+    }
+
+    /**
+     * Number of entries in source (0 - index, 1 - compacting table, 2 - active table)
+     * @param source source number
+     * @return number of entries
+     */
+    private long size(int source)
+    {
+        switch (source)
+        {
+            case 0:
+                return index.count;
+            case 1:
+                return compacting != null ? compacting.size : 0;
+            default:
+                return active.size;
+        }
+    }
+
+    /**
+     * Score at given position of source, sources are sorted by score (best first)
+     * @param source source number
+     * @param position position
+     * @return score
+     */
+    private int scoreAt(int source, int position)
+    {
+        switch (source)
+        {
+            case 0:
+                return index.scoreAt(position);
+            case 1:
+                return compacting.scores[position];
+            default:
+                return active.scores[position];
+        }
+    }
+
+    /**
+     * Entry at given position of source
+     * @param source source number
+     * @param position position
+     * @return entry
+     */
+    private Entry entryAt(int source, int position)
+    {
+        switch (source)
+        {
+            case 0:
+                return index.entryAt(position);
+            case 1:
+                return compacting.entryAt(position);
+            default:
+                return active.entryAt(position);
+        }
+    }
+
+    /**
+     * One leaderboard entry
+     */
+    public static final class Entry
+    {
+        /** Score */
+        public final int score;
+        /** Random shape generator seed of the game */
+        public final long seed;
+        /** Time when score was added (in milliseconds since epoch) */
+        public final long time;
+
+        /**
+         * Constructor
+         * @param score score
+         * @param seed seed
+         * @param time time
+         */
+        Entry(int score, long seed, long time)
+        {
+            this.score = score;
+            this.seed = seed;
+            this.time = time;
+        }
+    }
+
+    /**
+     * Scores added since last compaction, sorted by score (best first)
+     */
+    private static final class MemTable
+    {
+        /** Scores */
+        private int[] scores = new int[1024];
+        /** Seeds */
+        private long[] seeds = new long[1024];
+        /** Times */
+        private long[] times = new long[1024];
+        /** Number of entries */
+        private int size = 0;
+        /** Best score of every seed */
+        private final Map<Long, Integer> bestBySeed = new HashMap<>();
+
+        /**
+         * Reads log records into new table, they are sorted once, not inserted one by one,
+         * so rebuilding from long log is fast
+         * @param in log stream at first record
+         * @param count number of records
+         * @return table with records
+         * @throws IOException if log cannot be read
+         */
+        static MemTable read(DataInputStream in, long count) throws IOException
+        {
+            int size = (int) count;
+            int[] scores = new int[size];
+            long[] seeds = new long[size];
+            long[] times = new long[size];
+            //best score first, equal scores in log order, like add()
+            long[] order = new long[size];
+            for (int i = 0; i < size; ++i)
+            {
+                scores[i] = in.readInt();
+                seeds[i] = in.readLong();
+                times[i] = in.readLong();
+                order[i] = ((long) -scores[i] << 32) | i;
+            }
+            Arrays.sort(order);
+
+            MemTable table = new MemTable();
+            int capacity = Math.max(size, table.scores.length);
+            table.scores = new int[capacity];
+            table.seeds = new long[capacity];
+            table.times = new long[capacity];
+            for (int i = 0; i < size; ++i)
+            {
+                int k = (int) order[i];
+                table.scores[i] = scores[k];
+                table.seeds[i] = seeds[k];
+                table.times[i] = times[k];
+                table.bestBySeed.merge(seeds[k], scores[k], Math::max);
+            }
+            table.size = size;
+            return table;
+        }
+
+        /**
+         * Inserts entry at its sorted position
+         * @param score score
+         * @param seed seed
+         * @param time time
+         */
+        void add(int score, long seed, long time)
+        {
+            if (size == scores.length)
+            {
+                scores = Arrays.copyOf(scores, 2 * size);
+                seeds = Arrays.copyOf(seeds, 2 * size);
+                times = Arrays.copyOf(times, 2 * size);
+            }
+            int position = countBetterThan(score - 1);
+            System.arraycopy(scores, position, scores, position + 1, size - position);
+            System.arraycopy(seeds, position, seeds, position + 1, size - position);
+            System.arraycopy(times, position, times, position + 1, size - position);
+            scores[position] = score;
+            seeds[position] = seed;
+            times[position] = time;
+            ++size;
+            bestBySeed.merge(seed, score, Math::max);
+        }
+
+        /**
+         * Number of entries with better score (binary search)
+         * @param score score
+         * @return number of entries with score greater than given score
+         */
+        int countBetterThan(int score)
+        {
+            int low = 0;
+            int high = size;
+            while (low < high)
+            {
+                int middle = (low + high) >>> 1;
+                if (scores[middle] > score)
+                {
+                    low = middle + 1;
+                }
+                else
+                {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Best score of seed
+         * @param seed seed
+         * @return best score, -1 if there is no entry with this seed
+         */
+        int bestForSeed(long seed)
+        {
+            return bestBySeed.getOrDefault(seed, -1);
+        }
+
+        /**
+         * Entry at given position
+         * @param position position
+         * @return entry
+         */
+        Entry entryAt(int position)
+        {
+            return new Entry(scores[position], seeds[position], times[position]);
+        }
+    }
+
+    /**
+     * Memory-mapped index - header, entries sorted by score (best first),
+     * then the same entries sorted by seed and score (best first)
+     */
+    private static final class Index
+    {
+        /** Mapped index file, null if index is empty */
+        private final MappedByteBuffer map;
+        /** Number of entries */
+        private final int count;
+        /** Number of log records included in index */
+        private final long coveredLogRecords;
+
+        /**
+         * Constructor
+         * @param map mapped index file
+         * @param count number of entries
+         * @param coveredLogRecords number of log records included in index
+         */
+        private Index(MappedByteBuffer map, int count, long coveredLogRecords)
+        {
+            this.map = map;
+            this.count = count;
+            this.coveredLogRecords = coveredLogRecords;
+        }
+
+        /**
+         * Maps index file, missing file is empty index
+         * @param file index file
+         * @param logRecords number of records in score log
+         * @return index, null if file is not an index file, it's shorter than its header says
+         *         or it covers records which are not in the log
+         * @throws IOException if file cannot be mapped
+         */
+        static Index open(Path file, long logRecords) throws IOException
+        {
+            if (!Files.exists(file))
+            {
+                return new Index(null, 0, 0);
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+            {
+                long size = channel.size();
+                if (size < INDEX_HEADER_SIZE)
+                {
+                    return null;
+                }
+                MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                long count = map.getLong(8);
+                long covered = map.getLong(16);
+                if (map.getInt(0) != INDEX_MAGIC || count < 0 || size < INDEX_HEADER_SIZE + 2 * count * RECORD_SIZE
+                        || covered < 0 || covered > logRecords)
+                {
+                    return null;
+                }
+                return new Index(map, (int) count, covered);
+            }
+        }
+
+        /**
+         * Writes merged index and forces it to disk
+         * @param file output file
+         * @param base current index
+         * @param table in-memory table
+         * @param covered number of log records included in new index
+         * @throws IOException if file cannot be written
+         */
+        static void write(Path file, Index base, MemTable table, long covered) throws IOException
+        {
+            int total = base.count + table.size;
+            Integer[] bySeed = new Integer[table.size];
+            for (int i = 0; i < table.size; ++i)
+            {
+                bySeed[i] = i;
+            }
+            Arrays.sort(bySeed, (a, b) -> compareBySeed(table.seeds[a], table.scores[a],
+                    table.seeds[b], table.scores[b]));
+
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                         Channels.newOutputStream(channel), 1 << 16)))
+            {
+                out.writeInt(INDEX_MAGIC);
+                out.writeInt(0);
+                out.writeLong(total);
+                out.writeLong(covered);
+
+                int i = 0;
+                int j = 0;
+                while (i < base.count || j < table.size)
+                {
+                    if (j == table.size || (i < base.count && base.scoreAt(i) >= table.scores[j]))
+                    {
+                        writeRecord(out, base.map, base.scoreOffset(i++));
+                    }
+                    else
+                    {
+                        writeRecord(out, table.scores[j], table.seeds[j], table.times[j]);
+                        ++j;
+                    }
+                }
+
+                i = 0;
+                j = 0;
+                while (i < base.count || j < bySeed.length)
+                {
+                    int k = j < bySeed.length ? bySeed[j] : 0;
+                    if (j == bySeed.length || (i < base.count && compareBySeed(
+                            base.map.getLong(base.seedOffset(i) + 4), base.map.getInt(base.seedOffset(i)),
+                            table.seeds[k], table.scores[k]) <= 0))
+                    {
+                        writeRecord(out, base.map, base.seedOffset(i++));
+                    }
+                    else
+                    {
+                        writeRecord(out, table.scores[k], table.seeds[k], table.times[k]);
+                        ++j;
+                    }
+                }
+                out.flush();
+                channel.force(true);
+            }
+        }
+
+        /**
+         * Order of seed section - by seed, then by score (best first)
+         * @param seedA seed of first entry
+         * @param scoreA score of first entry
+         * @param seedB seed of second entry
+         * @param scoreB score of second entry
+         * @return negative, zero or positive number like Comparator
+         */
+        private static int compareBySeed(long seedA, int scoreA, long seedB, int scoreB)
+        {
+            int bySeed = Long.compare(seedA, seedB);
+            return bySeed != 0 ? bySeed : Integer.compare(scoreB, scoreA);
+        }
+
+        /**
+         * Writes record
+         * @param out output stream
+         * @param score score
+         * @param seed seed
+         * @param time time
+         * @throws IOException if record cannot be written
+         */
+        private static void writeRecord(DataOutputStream out, int score, long seed, long time) throws IOException
+        {
+            out.writeInt(score);
+            out.writeLong(seed);
+            out.writeLong(time);
+        }
+
+        /**
+         * Copies record from mapped index
+         * @param out output stream
+         * @param map mapped index
+         * @param offset record offset
+         * @throws IOException if record cannot be written
+         */
+        private static void writeRecord(DataOutputStream out, MappedByteBuffer map, long offset) throws IOException
+        {
+            int position = (int) offset;
+            writeRecord(out, map.getInt(position), map.getLong(position + 4), map.getLong(position + 12));
+        }
+
+        /**
+         * Offset of record in score section
+         * @param position position in score section
+         * @return offset
+         */
+        private int scoreOffset(int position)
+        {
+            return INDEX_HEADER_SIZE + position * RECORD_SIZE;
+        }
+
+        /**
+         * Offset of record in seed section
+         * @param position position in seed section
+         * @return offset
+         */
+        private int seedOffset(int position)
+        {
+            return INDEX_HEADER_SIZE + (count + position) * RECORD_SIZE;
+        }
+
+        /**
+         * Score at given position of score section
+         * @param position position
+         * @return score
+         */
+        int scoreAt(int position)
+        {
+            return map.getInt(scoreOffset(position));
+        }
+
+        /**
+         * Entry at given position of score section
+         * @param position position
+         * @return entry
+         */
+        Entry entryAt(int position)
+        {
+            int offset = scoreOffset(position);
+            return new Entry(map.getInt(offset), map.getLong(offset + 4), map.getLong(offset + 12));
+        }
+
+        /**
+         * Number of entries with better score (binary search in score section)
+         * @param score score
+         * @return number of entries with score greater than given score
+         */
+        long countBetterThan(int score)
+        {
+            int low = 0;
+            int high = count;
+            while (low < high)
+            {
+                int middle = (low + high) >>> 1;
+                if (scoreAt(middle) > score)
+                {
+                    low = middle + 1;
+                }
+                else
+                {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Best score of seed (binary search in seed section)
+         * @param seed seed
+         * @return best score, -1 if there is no entry with this seed
+         */
+        int bestForSeed(long seed)
+        {
+            int low = 0;
+            int high = count;
+            while (low < high)
+            {
+                int middle = (low + high) >>> 1;
+                if (map.getLong(seedOffset(middle) + 4) < seed)
+                {
+                    low = middle + 1;
+                }
+                else
+                {
+                    high = middle;
+                }
+            }
+            if (low < count && map.getLong(seedOffset(low) + 4) == seed)
+            {
+                return map.getInt(seedOffset(low));
+            }
+            return -1;
+        }
+    }
+}
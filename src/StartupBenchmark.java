@@ -0,0 +1,218 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup benchmark - time from process launch to first simulated tick (game without window)
+ * and to first playable frame (game window painted), every measurement is done in a fresh process,
+ * with and without class data sharing archive of the launcher
+ * also contains training session, which is run once to create the archive
+ */
+public class StartupBenchmark
+{
+    /** System property with launch time (nanoseconds since epoch), set by whoever starts the process */
+    public static final String LAUNCH_TIME_PROPERTY = "tetris.launchTime";
+    /** System property with path of class data sharing archive, set by launcher */
+    public static final String ARCHIVE_PROPERTY = "tetris.cdsArchive";
+    /** Default number of processes started for every measurement */
+    public static final int DEFAULT_RUNS = 10;
+    /** Prefix of line with measured time, child processes print it and benchmark parses it */
+    private static final String RESULT_PREFIX = "startup-ms ";
+    /** Maximal time of one measured process (in seconds) */
+    private static final int PROCESS_TIMEOUT_SECONDS = 30;
+    /** Number of ticks of bot game played in training session */
+    private static final int TRAINING_TICKS = 2000;
+    /** Number of pieces of puzzle solved in training session */
+    private static final int TRAINING_PIECES = 10;
+
+    private StartupBenchmark()
+    {
+    }
+
+    /**
+     * Plays first tick of game without window and prints time since launch
+     * @param boardWidth board width (in squares)
+     * @param boardHeight board height (in squares)
+     */
+    public static void reportFirstTick(int boardWidth, int boardHeight)
+    {
+        Controller game = new Controller(new Model(1), boardWidth, boardHeight);
+        game.start();
+        game.gameAction();
+        report("first simulated tick");
+    }
+
+    /**
+     * Prints time since launch and exits, used as first frame listener of game window
+     */
+    public static void reportFirstFrame()
+    {
+        report("first playable frame");
+        System.exit(0);
+    }
+
+    /**
+     * Measures startup in fresh processes and prints median and minimal times
+     * @param runs number of processes for every measurement
+     * @throws IOException if process cannot be started
+     */
+    public static void run(int runs) throws IOException
+    {
+        String archive = System.getProperty(ARCHIVE_PROPERTY);
+        List<String> configurations = new ArrayList<>();
+        configurations.add(null);
+        if (archive != null && Files.exists(Paths.get(archive)))
+        {
+            configurations.add(archive);
+        }
+        else
+        {
+            System.out.println("No class data sharing archive, start the benchmark through launcher/tetris.sh");
+        }
+
+        for (String configuration : configurations)
+        {
+            String name = configuration == null ? "without archive" : "with archive";
+            measure(name, configuration, "startup-tick", "first simulated tick", runs);
+            measure(name, configuration, "startup-frame", "first playable frame", runs);
+        }
+    }
+
+    /**
+     * Typical session, during which class data sharing archive is recorded:
+     * bot game and puzzle without window, then game window until first frame is painted (if there is a display)
+     * @param boardWidth board width (in squares)
+     * @param boardHeight board height (in squares)
+     * @throws IOException if bot game cannot be recorded
+     */
+    public static void train(int boardWidth, int boardHeight) throws IOException
+    {
+        Replay replay = Replay.recordBot(1, TRAINING_TICKS, boardWidth, boardHeight, null, null);
+        Controller game = replay.newGame(boardWidth, boardHeight);
+        for (int tick = 0; tick < replay.getTicks(); ++tick)
+        {
+            replay.playTick(game, tick);
+        }
+
+        Model.Shape[] board = new Model.Shape[boardWidth * boardHeight];
+        Arrays.fill(board, Model.Shape.EmptyShape);
+        Controller puzzle = new Controller(new Model(1), boardWidth, boardHeight);
+        puzzle.start();
+        try (PuzzleSolver solver = new PuzzleSolver(boardWidth, boardHeight, PuzzleSolver.DEFAULT_BEAM_WIDTH,
+                Runtime.getRuntime().availableProcessors()))
+        {
+            solver.solve(board, puzzle.upcomingPieces(TRAINING_PIECES), PuzzleSolver.Goal.MAX_LINES);
+        }
+
+        if (java.awt.GraphicsEnvironment.isHeadless())
+        {
+            System.exit(0);
+        }
+        GameWindow.openGame(new Model(), null, () -> System.exit(0));
+    }
+
+    /**
+     * Starts measured processes one after another and prints their results
+     * @param name configuration name
+     * @param archive class data sharing archive, null if it's not used
+     * @param mode mode of measured process
+     * @param description description of measured time
+     * @param runs number of processes
+     * @throws IOException if process cannot be started
+     */
+    private static void measure(String name, String archive, String mode, String description, int runs)
+            throws IOException
+    {
+        List<Double> times = new ArrayList<>();
+        for (int i = 0; i < runs; ++i)
+        {
+            double time = startProcess(archive, mode);
+            if (Double.isNaN(time))
+            {
+                System.out.printf("%-16s %-21s not available%n", name, description);
+                return;
+            }
+            times.add(time);
+        }
+        Collections.sort(times);
+        System.out.printf("%-16s %-21s median %7.1f ms  min %7.1f ms%n", name, description,
+                times.get(times.size() / 2), times.get(0));
+    }
+
+    /**
+     * Starts one measured process with the same class path and waits for its result
+     * @param archive class data sharing archive, null if it's not used
+     * @param mode mode of measured process
+     * @return time printed by the process (in milliseconds), NaN if it failed
+     * @throws IOException if process cannot be started
+     */
+    private static double startProcess(String archive, String mode) throws IOException
+    {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add(archive != null ? "-XX:SharedArchiveFile=" + archive : "-Xshare:auto");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("-D" + LAUNCH_TIME_PROPERTY + "=" + epochNanos(Instant.now()));
+        command.add("TetrisStartGame");
+        command.add(mode);
+
+        Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.DISCARD).start();
+        double time = Double.NaN;
+        try (BufferedReader out = new BufferedReader(new InputStreamReader(process.getInputStream())))
+        {
+            String line;
+            while ((line = out.readLine()) != null)
+            {
+                if (line.startsWith(RESULT_PREFIX))
+                {
+                    time = Double.parseDouble(line.substring(RESULT_PREFIX.length()).split(" ")[0]);
+                }
+            }
+            if (!process.waitFor(PROCESS_TIMEOUT_SECONDS, TimeUnit.SECONDS))
+            {
+                process.destroyForcibly();
+                return Double.NaN;
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            process.destroyForcibly();
+            return Double.NaN;
+        }
+        return process.exitValue() == 0 ? time : Double.NaN;
+    }
+
+    /**
+     * Prints time since launch of this process
+     * @param description description of measured time
+     */
+    private static void report(String description)
+    {
+        String launch = System.getProperty(LAUNCH_TIME_PROPERTY);
+        long launchNanos = launch != null ? Long.parseLong(launch)
+                : epochNanos(ProcessHandle.current().info().startInstant().orElse(Instant.now()));
+        double millis = (epochNanos(Instant.now()) - launchNanos) / 1e6;
+        System.out.printf(RESULT_PREFIX + "%.1f %s%n", millis, description);
+    }
+
+    /**
+     * Converts time to nanoseconds since epoch
+     * @param instant time
+     * @return nanoseconds since epoch
+     */
+    private static long epochNanos(Instant instant)
+    {
+        return instant.getEpochSecond() * 1_000_000_000L + instant.getNano();
+    }
+}
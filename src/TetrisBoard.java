@@ -18,6 +18,18 @@ public class TetrisBoard extends JPanel implements ActionListener
     private final JTextField statusBar;
     /** Controller */
     private Controller controller;
+    /** Performance overlay, toggled with F3 */
+    private final PerformanceOverlay overlay = new PerformanceOverlay();
+    /** True if performance overlay is shown */
+    private boolean isOverlayVisible = false;
+    /** Delay between rendered frames (in milliseconds), about 144 frames per second */
+    private static final int FRAME_DELAY = 7;
+    /** Render timer, board is repainted every frame while it's animated, independently of logic ticks */
+    private final Timer frameTimer = new Timer(FRAME_DELAY, e -> repaintIfAnimating());
+    /** True if game over is shown by leaderboard (with rank), it's read by status bar updater thread */
+    private volatile boolean isLeaderboardAttached = false;
+    /** Called once after first frame is painted, null if nobody waits for it */
+    private Runnable firstFrameListener;
 
     /**
      * Constructor, setting status bar, adding key listener
@@ -29,38 +41,36 @@ public class TetrisBoard extends JPanel implements ActionListener
         statusBar = parent.getStatusBar();
         addKeyListener(new TAdapter());
         setBackground(Color.black);
+        frameTimer.start();
     }
 
     /**
-     * Drawing grid
-     * @param g Graphics object
-     * @param x x coordinate
-     * @param y y coordinate
+     * Controller setter
+     * @param controller controller to be set
      */
-    public void drawLines(Graphics g, int x, int y)
+    public void setController(Controller controller)
     {
-        Color color = new Color(27, 62, 99); //1B3E63
-        g.setColor(color);
-
-
-        g.drawLine(x, y + squareHeight() - 1, x, y);
-        g.drawLine(x, y, x + squareWidth() - 1, y);
-
-
-        g.drawLine(x + 1, y + squareHeight() - 1,
-                x + squareWidth() - 1, y + squareHeight() - 1);
+        this.controller = controller;
+        controller.getEvents().subscribe("status-bar", new StatusBarUpdater());
+    }
 
-        g.drawLine(x + squareWidth() - 1, y + squareHeight() - 1,
-                x + squareWidth() - 1, y + 1);
+    /**
+     * Creates timer of logic ticks, which calls gameAction through actionPerformed
+     * @param delay delay between ticks (in milliseconds)
+     * @return timer, not started
+     */
+    public Timer createTimer(int delay)
+    {
+        return new Timer(delay, this);
     }
 
     /**
-     * Controller setter
-     * @param controller controller to be set
+     * First frame listener setter
+     * @param firstFrameListener called once after first frame is painted, can be null
      */
-    public void setController(Controller controller)
+    public void setFirstFrameListener(Runnable firstFrameListener)
     {
-        this.controller = controller;
+        this.firstFrameListener = firstFrameListener;
     }
 
     /**
@@ -93,76 +103,113 @@ public class TetrisBoard extends JPanel implements ActionListener
     }
 
 
+    /**
+     * Repaints board if piece is falling or an animation is running
+     */
+    private void repaintIfAnimating()
+    {
+        if (controller != null && controller.isAnimating(System.nanoTime()))
+        {
+            repaint();
+        }
+    }
+
     /**
      * Drawing
      * @param g Graphics object
      */
     public void paint(Graphics g)
     {
+        long startNanos = System.nanoTime();
         super.paint(g);
-        controller.paint(g, getSize().getWidth(), getSize().getHeight());
-
+        controller.paint(g, getWidth(), getHeight(), startNanos);
+        if (isOverlayVisible)
+        {
+            overlay.paint(g, controller.getMetrics());
+        }
+        controller.getMetrics().framePainted(startNanos, System.nanoTime());
+        if (firstFrameListener != null)
+        {
+            Runnable listener = firstFrameListener;
+            firstFrameListener = null;
+            listener.run();
+        }
     }
 
     /**
-     * Method, which returns square width in pixels
-     * @return square width in pixels
+     * Status bar setter
+     * @param text  status bar with score
      */
-    private int squareWidth()
+    public void setStatusText(String text)
     {
-        return (int) getSize().getWidth() / BOARD_WIDTH;
+        statusBar.setText(text);
     }
 
     /**
-     * Method, which returns square height in pixels
-     * @return square height in pixels
+     * Shows player's place in leaderboard after game over,
+     * can be called from any thread, status bar is updated on event dispatch thread
+     * @param score player's score
+     * @param rank place in leaderboard, 1 is the best, 0 if score could not be saved
      */
-    private int squareHeight()
+    public void showRank(int score, long rank)
     {
-        return (int) getSize().getHeight() / BOARD_HEIGHT;
+        String text = "Game over, your score: " + score + (rank > 0 ? ", rank: " + rank : "");
+        SwingUtilities.invokeLater(() -> setStatusText(text));
     }
 
     /**
-     * Method which draws one square at (x,y) coordinates
-     * @param g Graphics object
-     * @param x x coordinate
-     * @param y y coordinate
-     * @param shape shape which we want do draw
+     * Leaderboard setter, when it's attached, game over is shown by showRank instead of status bar updater
+     * @param attached true if leaderboard shows game over with rank
      */
-    public void drawSquare(Graphics g, int x, int y, Model.Shape shape)
+    public void setLeaderboardAttached(boolean attached)
     {
-        Color[] colors =
-                {
-                        new Color(0, 0, 0), new Color(255, 0, 0),
-                        new Color(0, 255, 0), new Color(52, 223, 255),
-                        new Color(185, 9, 212), new Color(255, 255, 0),
-                        new Color(255, 146, 0), new Color(0, 0, 255)
-                };
-
-
-        Color color = colors[shape.ordinal()];
-
-        g.setColor(color);
-        g.fillRect(x + 1, y + 1, squareWidth() - 2, squareHeight() - 2);
-
-        g.setColor(color.brighter());
-        g.drawLine(x, y + squareHeight() - 1, x, y);
-        g.drawLine(x, y, x + squareWidth() - 1, y);
-
-        g.setColor(color.darker());
-        g.drawLine(x + 1, y + squareHeight() - 1,
-                x + squareWidth() - 1, y + squareHeight() - 1);
-        g.drawLine(x + squareWidth() - 1, y + squareHeight() - 1,
-                x + squareWidth() - 1, y + 1);
+        isLeaderboardAttached = attached;
     }
 
     /**
-     * Status bar setter
-     * @param text  status bar with score
+     * Game event consumer, which updates status bar,
+     * text is prepared on consumer thread and set on event dispatch thread
      */
-    public void setStatusText(String text)
+    private class StatusBarUpdater implements GameEventListener
     {
-        statusBar.setText(text);
+        /**
+         * Method, which is called for every game event
+         * @param type event type
+         * @param shape current piece shape
+         * @param x current piece x coordinate
+         * @param y current piece y coordinate
+         * @param lines number of removed lines
+         * @param score player's score
+         */
+        @Override
+        public void onEvent(GameEventType type, Model.Shape shape, int x, int y, int lines, int score)
+        {
+            String text;
+            switch (type)
+            {
+                case GAME_STARTED:
+                case LINES_CLEARED:
+                case GAME_RESTORED:
+                    text = "Score: " + score;
+                    break;
+                case GAME_PAUSED:
+                    text = "paused";
+                    break;
+                case GAME_RESUMED:
+                    text = String.valueOf(score);
+                    break;
+                case GAME_OVER:
+                    if (isLeaderboardAttached)
+                    {
+                        return;
+                    }
+                    text = "Game over, your score: " + score;
+                    break;
+                default:
+                    return;
+            }
+            SwingUtilities.invokeLater(() -> setStatusText(text));
+        }
     }
 
     /**
@@ -176,8 +223,14 @@ public class TetrisBoard extends JPanel implements ActionListener
          */
         public void keyPressed(KeyEvent e)
         {
+            if (e.getKeyCode() == KeyEvent.VK_F3)
+            {
+                isOverlayVisible = !isOverlayVisible;
+                repaint();
+                return;
+            }
 
-            if (!controller.isStarted() || controller.isCurrentPieceNoShaped())
+            if (!controller.isStarted())
             {
                 return;
             }
@@ -190,11 +243,13 @@ public class TetrisBoard extends JPanel implements ActionListener
                 return;
             }
 
-            if (controller.isPaused())
+            if (controller.isPaused() || controller.isFallingFinished() || controller.isCurrentPieceNoShaped())
             {
                 return;
             }
 
+            long inputNanos = eventNanos(e);
+            int revision = controller.getRevision();
             switch (keycode)
             {
                 case KeyEvent.VK_LEFT:
@@ -213,7 +268,28 @@ public class TetrisBoard extends JPanel implements ActionListener
                     controller.dropDown();
                     break;
             }
+            if (controller.getRevision() != revision)
+            {
+                controller.getMetrics().inputApplied(inputNanos);
+            }
+
+        }
 
+        /**
+         * Time of key press on System.nanoTime scale, event time has only millisecond precision,
+         * so time spent in event queue is included in latency
+         * @param e key event
+         * @return key press time (in nanoseconds), at most current time, current time if event has no time
+         */
+        private long eventNanos(KeyEvent e)
+        {
+            long nowNanos = System.nanoTime();
+            if (e.getWhen() <= 0)
+            {
+                return nowNanos;
+            }
+            long ageMillis = System.currentTimeMillis() - e.getWhen();
+            return nowNanos - Math.max(0, ageMillis) * 1_000_000;
         }
     }
 }
\ No newline at end of file
@@ -1,6 +1,8 @@
 import javax.swing.*;
 import javax.swing.border.LineBorder;
 import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 
 /**
  * Frame class, which represents View
@@ -50,6 +52,22 @@ public class TetrisFrame extends JFrame
         setResizable(false);
     }
 
+    /**
+     * Makes snapshot of the game when window is being closed
+     * @param autosave autosave
+     */
+    public void saveOnClose(Autosave autosave)
+    {
+        addWindowListener(new WindowAdapter()
+        {
+            @Override
+            public void windowClosing(WindowEvent e)
+            {
+                autosave.saveNow(controller);
+            }
+        });
+    }
+
     /**
      * Text field getter
      * @return text field
@@ -1,15 +1,392 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 /**
  * Main class, where game is started
+ * without arguments single game is started,
+ * "tournament [number of games] [replay files...]" starts tournament view with replays and bot games
+ * "record <seed> <ticks> <replay file> [training directory]" records bot game, optionally with training data,
+ * "bots <first seed> <games> [max ticks]" plays bot games with consecutive seeds in parallel without window,
+ * bot games which end with game over are added to leaderboard
+ * "export <replay file> <output directory | file.raw> [square size]" renders replay frames without display
+ * "scores [n]" prints n best scores
+ * "alloc-check" checks that game logic and painting do not allocate
+ * "solve <seed> <pieces> [beam width] [lines | perfect] [board file]" solves puzzle with pieces of given seed,
+ * "solve-demo" with the same arguments plays found solution in game window
+ * "startup-bench [runs]" measures time to first simulated tick and to first playable frame in fresh processes,
+ * "startup-tick", "startup-frame" and "cds-training" are modes of processes started by the benchmark and launcher
+ * Swing is used only by modes with window, through GameWindow, so other modes never load AWT
  */
 public class TetrisStartGame
 {
-    public static void main(String[] args)
+    /** Default number of games in tournament view */
+    private static final int DEFAULT_TOURNAMENT_GAMES = 64;
+    /** Board width (in squares) used by modes without window */
+    private static final int BOARD_WIDTH = 10;
+    /** Board height (in squares) used by modes without window */
+    private static final int BOARD_HEIGHT = 22;
+    /** Default square size (in pixels) of exported frames */
+    private static final int DEFAULT_SQUARE_SIZE = 20;
+    /** Maximal size of one training data file (in bytes) */
+    private static final long TRAINING_FILE_SIZE = 64L << 20;
+    /** Default number of printed best scores */
+    private static final int DEFAULT_TOP_SCORES = 10;
+    /** Default maximal number of ticks of one bot game */
+    private static final int DEFAULT_BOT_TICKS = 100_000;
+    /** Directory with autosave and scores */
+    private static final Path DATA_DIRECTORY = Paths.get(System.getProperty("user.home"), ".tetris");
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length > 0 && args[0].equals("record"))
+        {
+            recordBot(Long.parseLong(args[1]), Integer.parseInt(args[2]), Paths.get(args[3]),
+                    args.length > 4 ? Paths.get(args[4]) : null);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("bots"))
+        {
+            playBots(Long.parseLong(args[1]), Integer.parseInt(args[2]),
+                    args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_BOT_TICKS);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("export"))
+        {
+            exportFrames(Paths.get(args[1]), Paths.get(args[2]),
+                    args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_SQUARE_SIZE);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("scores"))
+        {
+            printScores(args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_TOP_SCORES);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("alloc-check"))
+        {
+            AllocationCheck.run(BOARD_WIDTH, BOARD_HEIGHT);
+            return;
+        }
+        if (args.length > 0 && (args[0].equals("solve") || args[0].equals("solve-demo")))
+        {
+            solvePuzzle(args, args[0].equals("solve-demo"));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("tournament"))
+        {
+            List<Replay> replays = new ArrayList<>();
+            for (int i = 2; i < args.length; ++i)
+            {
+                replays.add(Replay.load(Paths.get(args[i])));
+            }
+            GameWindow.openTournament(args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_TOURNAMENT_GAMES, replays);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("startup-bench"))
+        {
+            StartupBenchmark.run(args.length > 1 ? Integer.parseInt(args[1]) : StartupBenchmark.DEFAULT_RUNS);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("startup-tick"))
+        {
+            StartupBenchmark.reportFirstTick(BOARD_WIDTH, BOARD_HEIGHT);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("startup-frame"))
+        {
+            GameWindow.openGame(new Model(), null, StartupBenchmark::reportFirstFrame);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("cds-training"))
+        {
+            StartupBenchmark.train(BOARD_WIDTH, BOARD_HEIGHT);
+            return;
+        }
+
+        startGame();
+    }
+
+    /**
+     * Starts single game in window, only autosave is opened before the window,
+     * saved game is restored on event dispatch thread, because game timer is already running,
+     * metrics registration and leaderboard are not needed for first frame, so they are started later
+     */
+    private static void startGame()
+    {
+        Autosave autosave = openAutosave();
+        Controller controller = GameWindow.openGame(new Model(), autosave, null);
+        if (autosave != null)
+        {
+            GameWindow.runOnEventThread(() ->
+            {
+                autosave.load(controller);
+                controller.setAutosave(autosave);
+            });
+        }
+
+        Thread deferred = new Thread(() ->
+        {
+            controller.getMetrics().register("Tetris:type=GameMetrics");
+            recordScores(controller);
+        }, "deferred-startup");
+        deferred.setDaemon(true);
+        deferred.start();
+    }
+
+    /**
+     * Solves puzzle - board (empty or read from file) and pieces of game with given seed,
+     * prints found placements, in demo mode game window with the same seed is opened after the solution is found,
+     * and board and autoplay are installed on event dispatch thread, where game timer runs
+     * @param args command line arguments
+     * @param demo true if solution is played in game window
+     * @throws IOException if board file cannot be read
+     */
+    private static void solvePuzzle(String[] args, boolean demo) throws IOException
+    {
+        long seed = Long.parseLong(args[1]);
+        int numPieces = Integer.parseInt(args[2]);
+        int beamWidth = args.length > 3 ? Integer.parseInt(args[3]) : PuzzleSolver.DEFAULT_BEAM_WIDTH;
+        PuzzleSolver.Goal goal = args.length > 4 && args[4].equals("perfect")
+                ? PuzzleSolver.Goal.PERFECT_CLEAR : PuzzleSolver.Goal.MAX_LINES;
+
+        Controller controller = new Controller(new Model(seed), BOARD_WIDTH, BOARD_HEIGHT);
+        controller.start();
+        int width = controller.getBoardWidth();
+        int height = controller.getBoardHeight();
+        Model.Shape[] board;
+        if (args.length > 5)
+        {
+            board = PuzzleSolver.readBoard(Paths.get(args[5]), width, height);
+        }
+        else
+        {
+            board = new Model.Shape[width * height];
+            Arrays.fill(board, Model.Shape.EmptyShape);
+        }
+
+        PuzzleSolver.Solution solution;
+        try (PuzzleSolver solver = new PuzzleSolver(width, height, beamWidth,
+                Runtime.getRuntime().availableProcessors()))
+        {
+            solution = solver.solve(board, controller.upcomingPieces(numPieces), goal);
+        }
+        if (solution == null)
+        {
+            System.out.println("No perfect clear found");
+            return;
+        }
+        for (int i = 0; i < solution.size(); ++i)
+        {
+            System.out.printf("%3d. %-9s rotations %d  x %d%n", i + 1, solution.getShape(i),
+                    solution.getRotations(i), solution.getColumn(i));
+        }
+        System.out.printf("lines %d%s, %d boards expanded in %.2f ms%n", solution.getLines(),
+                solution.isPerfectClear() ? " (perfect clear)" : "", solution.getExpanded(),
+                solution.getSolveNanos() / 1e6);
+        if (demo)
+        {
+            Autoplay autoplay = new Autoplay(solution);
+            Controller demoGame = GameWindow.openGame(new Model(seed), null, null);
+            GameWindow.runOnEventThread(() ->
+            {
+                demoGame.loadBoard(board);
+                demoGame.setAutoplay(autoplay);
+            });
+        }
+    }
+
+    /**
+     * Opens autosave file in user's home directory,
+     * game can be played without autosave, so failure is only reported
+     * @return autosave, null if it cannot be opened
+     */
+    private static Autosave openAutosave()
+    {
+        Path file = DATA_DIRECTORY.resolve("autosave.bin");
+        try
+        {
+            return new Autosave(file, Autosave.DEFAULT_INTERVAL_TICKS);
+        }
+        catch (IOException e)
+        {
+            System.err.println("Autosave is not available: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Opens leaderboard in user's home directory,
+     * games can be played without leaderboard, so failure is only reported
+     * @return leaderboard, null if it cannot be opened
+     */
+    private static ScoreBoard openScoreBoard()
+    {
+        try
+        {
+            return new ScoreBoard(DATA_DIRECTORY);
+        }
+        catch (IOException e)
+        {
+            System.err.println("Leaderboard is not available: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Adds score of every finished game to leaderboard and shows it with its rank in status bar,
+     * scores are written by event consumer thread, which is the only one showing game over then
+     * @param controller controller
+     */
+    private static void recordScores(Controller controller)
+    {
+        ScoreBoard scoreBoard = openScoreBoard();
+        if (scoreBoard == null)
+        {
+            return;
+        }
+
+        controller.setLeaderboardAttached(true);
+        controller.getEvents().subscribe("leaderboard", (type, shape, x, y, lines, score) ->
+        {
+            if (type != GameEventType.GAME_OVER)
+            {
+                return;
+            }
+            try
+            {
+                scoreBoard.add(score, controller.getGameSeed());
+                controller.showRank(score, scoreBoard.rankOf(score));
+            }
+            catch (IOException e)
+            {
+                System.err.println("Score cannot be saved: " + e.getMessage());
+                controller.showRank(score, 0);
+            }
+        });
+    }
+
+    /**
+     * Prints best scores from leaderboard
+     * @param n number of scores
+     * @throws IOException if leaderboard cannot be opened
+     */
+    private static void printScores(int n) throws IOException
+    {
+        try (ScoreBoard scoreBoard = new ScoreBoard(DATA_DIRECTORY))
+        {
+            int rank = 1;
+            for (ScoreBoard.Entry entry : scoreBoard.top(n))
+            {
+                System.out.printf("%3d. %6d  seed %d  %tF %<tT%n", rank++, entry.score, entry.seed, entry.time);
+            }
+        }
+    }
+
+    /**
+     * Records bot game, its score is added to leaderboard if game is over
+     * @param seed seed
+     * @param ticks maximal number of ticks
+     * @param replayFile output replay file
+     * @param trainingDirectory output directory for training data, null if it is not recorded
+     * @throws IOException if replay, training data or score cannot be written
+     */
+    private static void recordBot(long seed, int ticks, Path replayFile, Path trainingDirectory) throws IOException
+    {
+        try (ScoreBoard scoreBoard = openScoreBoard())
+        {
+            if (trainingDirectory == null)
+            {
+                Replay.recordBot(seed, ticks, BOARD_WIDTH, BOARD_HEIGHT, null, scoreBoard).save(replayFile);
+                return;
+            }
+            try (TrainingRecorder recorder = new TrainingRecorder(trainingDirectory, BOARD_WIDTH, BOARD_HEIGHT,
+                    TRAINING_FILE_SIZE))
+            {
+                Replay.recordBot(seed, ticks, BOARD_WIDTH, BOARD_HEIGHT, recorder, scoreBoard).save(replayFile);
+            }
+        }
+    }
+
+    /**
+     * Plays bot games without window, every worker thread plays every n-th seed,
+     * scores of games which end with game over are added to leaderboard
+     * @param firstSeed seed of first game, next games have next seeds
+     * @param games number of games
+     * @param maxTicks maximal number of ticks of one game
+     * @throws IOException if leaderboard cannot be opened or written
+     */
+    private static void playBots(long firstSeed, int games, int maxTicks) throws IOException
+    {
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        try (ScoreBoard scoreBoard = new ScoreBoard(DATA_DIRECTORY))
+        {
+            long sizeBefore = scoreBoard.size();
+            List<Future<Void>> results = new ArrayList<>(threads);
+            for (int worker = 0; worker < threads; ++worker)
+            {
+                int first = worker;
+                results.add(workers.submit(() ->
+                {
+                    for (int game = first; game < games; game += threads)
+                    {
+                        Replay.recordBot(firstSeed + game, maxTicks, BOARD_WIDTH, BOARD_HEIGHT, null, scoreBoard);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<Void> result : results)
+            {
+                result.get();
+            }
+            System.out.println(games + " bot games played, " + (scoreBoard.size() - sizeBefore)
+                    + " scores added, leaderboard has " + scoreBoard.size() + " scores");
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException e)
+        {
+            throw new IOException("Bot game failed", e.getCause());
+        }
+        finally
+        {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Renders replay frames in headless mode
+     * @param replayFile replay file
+     * @param output output directory for PNG sequence or .raw file
+     * @param squareSize square size (in pixels)
+     * @throws IOException if replay cannot be read or frames cannot be written
+     */
+    private static void exportFrames(Path replayFile, Path output, int squareSize) throws IOException
     {
-        Model model = new Model();
-        TetrisFrame game = new TetrisFrame();
-        Controller controller = new Controller(model, game);
-        game.setController(controller);
+        System.setProperty("java.awt.headless", "true");
+        Replay replay = Replay.load(replayFile);
+        FrameExporter exporter = new FrameExporter(BOARD_WIDTH, BOARD_HEIGHT, squareSize,
+                Runtime.getRuntime().availableProcessors());
 
-        game.init();
+        int frames;
+        if (output.toString().endsWith(".raw"))
+        {
+            frames = exporter.exportRaw(replay, output);
+        }
+        else
+        {
+            frames = exporter.exportPng(replay, output);
+        }
+        System.out.println(frames + " frames " + exporter.getFrameWidth() + "x" + exporter.getFrameHeight()
+                + " written to " + output);
     }
-}
\ No newline at end of file
+}
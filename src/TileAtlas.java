@@ -0,0 +1,185 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * Tile atlas - one image with prerendered squares of every shape,
+ * shared by all boards which are drawn with the same square size
+ * tile 0 is empty grid cell, tile n is square of shape with ordinal n,
+ * translucent flash tiles of animations are in separate image
+ */
+public class TileAtlas
+{
+    /** Grid color */
+    private static final Color GRID_COLOR = new Color(27, 62, 99); //1B3E63
+    /** Square colors, index is shape ordinal */
+    private static final Color[] COLORS =
+            {
+                    new Color(0, 0, 0), new Color(255, 0, 0),
+                    new Color(0, 255, 0), new Color(52, 223, 255),
+                    new Color(185, 9, 212), new Color(255, 255, 0),
+                    new Color(255, 146, 0), new Color(0, 0, 255)
+            };
+    /** Brighter square colors (top and left edge) */
+    private static final Color[] BRIGHTER_COLORS = new Color[COLORS.length];
+    /** Darker square colors (bottom and right edge) */
+    private static final Color[] DARKER_COLORS = new Color[COLORS.length];
+    /** Flash colors of animations, from transparent to opaque white */
+    private static final Color[] FLASH_COLORS = new Color[16];
+
+    static
+    {
+        for (int i = 0; i < COLORS.length; ++i)
+        {
+            BRIGHTER_COLORS[i] = COLORS[i].brighter();
+            DARKER_COLORS[i] = COLORS[i].darker();
+        }
+        for (int i = 0; i < FLASH_COLORS.length; ++i)
+        {
+            FLASH_COLORS[i] = new Color(255, 255, 255, 255 * i / (FLASH_COLORS.length - 1));
+        }
+    }
+
+    /** Square width (in pixels) */
+    private final int squareWidth;
+    /** Square height (in pixels) */
+    private final int squareHeight;
+    /** Atlas image, all tiles in one row */
+    private final BufferedImage image;
+    /** Flash tiles, from transparent to opaque white, all in one row */
+    private final BufferedImage flashImage;
+
+    /**
+     * Constructor - renders all tiles
+     * @param squareWidth square width (in pixels)
+     * @param squareHeight square height (in pixels)
+     */
+    public TileAtlas(int squareWidth, int squareHeight)
+    {
+        this.squareWidth = squareWidth;
+        this.squareHeight = squareHeight;
+        this.image = new BufferedImage(squareWidth * COLORS.length, squareHeight, BufferedImage.TYPE_INT_RGB);
+
+        Graphics g = image.getGraphics();
+        drawGridCell(g, 0, 0, squareWidth, squareHeight);
+        for (int i = 1; i < COLORS.length; ++i)
+        {
+            drawSquare(g, i * squareWidth, 0, squareWidth, squareHeight, i);
+        }
+        g.dispose();
+
+        this.flashImage = new BufferedImage(squareWidth * FLASH_COLORS.length, squareHeight,
+                BufferedImage.TYPE_INT_ARGB);
+        g = flashImage.getGraphics();
+        for (int i = 0; i < FLASH_COLORS.length; ++i)
+        {
+            g.setColor(FLASH_COLORS[i]);
+            g.fillRect(i * squareWidth, 0, squareWidth, squareHeight);
+        }
+        g.dispose();
+    }
+
+    /**
+     * Square width getter
+     * @return square width (in pixels)
+     */
+    public int getSquareWidth()
+    {
+        return squareWidth;
+    }
+
+    /**
+     * Square height getter
+     * @return square height (in pixels)
+     */
+    public int getSquareHeight()
+    {
+        return squareHeight;
+    }
+
+    /**
+     * Check if atlas was rendered for given square size
+     * @param width square width (in pixels)
+     * @param height square height (in pixels)
+     * @return true if atlas tiles have given size
+     */
+    public boolean hasSize(int width, int height)
+    {
+        return squareWidth == width && squareHeight == height;
+    }
+
+    /**
+     * Copy tile of given shape to (x,y) coordinates,
+     * empty shape is drawn as grid cell
+     * @param g Graphics object
+     * @param x x coordinate
+     * @param y y coordinate
+     * @param shape shape which we want to draw
+     */
+    public void drawTile(Graphics g, int x, int y, Model.Shape shape)
+    {
+        int sourceX = shape.ordinal() * squareWidth;
+        g.drawImage(image, x, y, x + squareWidth, y + squareHeight,
+                sourceX, 0, sourceX + squareWidth, squareHeight, null);
+    }
+
+    /**
+     * Copy white flash tile of given intensity to (x,y) coordinates,
+     * flash is blended from prepared tile, because filling with translucent color allocates in Java2D
+     * @param g Graphics object
+     * @param x x coordinate
+     * @param y y coordinate
+     * @param intensity intensity from 0 (transparent) to 1 (opaque)
+     */
+    public void drawFlash(Graphics g, int x, int y, double intensity)
+    {
+        int sourceX = (int) (intensity * (FLASH_COLORS.length - 1)) * squareWidth;
+        g.drawImage(flashImage, x, y, x + squareWidth, y + squareHeight,
+                sourceX, 0, sourceX + squareWidth, squareHeight, null);
+    }
+
+    /**
+     * Drawing one grid cell
+     * @param g Graphics object
+     * @param x x coordinate
+     * @param y y coordinate
+     * @param width square width (in pixels)
+     * @param height square height (in pixels)
+     */
+    static void drawGridCell(Graphics g, int x, int y, int width, int height)
+    {
+        g.setColor(GRID_COLOR);
+
+        g.drawLine(x, y + height - 1, x, y);
+        g.drawLine(x, y, x + width - 1, y);
+
+        g.drawLine(x + 1, y + height - 1,
+                x + width - 1, y + height - 1);
+        g.drawLine(x + width - 1, y + height - 1,
+                x + width - 1, y + 1);
+    }
+
+    /**
+     * Drawing one square of a shape
+     * @param g Graphics object
+     * @param x x coordinate
+     * @param y y coordinate
+     * @param width square width (in pixels)
+     * @param height square height (in pixels)
+     * @param shapeOrdinal ordinal of shape which we want to draw
+     */
+    static void drawSquare(Graphics g, int x, int y, int width, int height, int shapeOrdinal)
+    {
+        g.setColor(COLORS[shapeOrdinal]);
+        g.fillRect(x + 1, y + 1, width - 2, height - 2);
+
+        g.setColor(BRIGHTER_COLORS[shapeOrdinal]);
+        g.drawLine(x, y + height - 1, x, y);
+        g.drawLine(x, y, x + width - 1, y);
+
+        g.setColor(DARKER_COLORS[shapeOrdinal]);
+        g.drawLine(x + 1, y + height - 1,
+                x + width - 1, y + height - 1);
+        g.drawLine(x + width - 1, y + height - 1,
+                x + width - 1, y + 1);
+    }
+}
@@ -0,0 +1,249 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tournament view - grid of many concurrent games drawn in one panel
+ * first boards play loaded replays, remaining boards are bots - solver bots, which plan
+ * next pieces with PuzzleSolver, alternate with bots making random moves,
+ * all boards are drawn through one shared tile atlas into one frame image,
+ * boards which have not changed since last frame are skipped
+ */
+public class TournamentPanel extends JPanel implements ActionListener
+{
+    /** Serialization version */
+    private static final long serialVersionUID = 1L;
+    /** Board width (in squares) */
+    private static final int BOARD_WIDTH = 10;
+    /** Board height (in squares) */
+    private static final int BOARD_HEIGHT = 22;
+    /** Logic tick delay (in milliseconds) */
+    private static final int TICK_DELAY = 100;
+    /** Frame delay (in milliseconds) */
+    private static final int FRAME_DELAY = 16;
+    /** Number of pieces planned at once by solver bots */
+    private static final int SOLVER_PIECES = 4;
+    /** Beam width of solver bots, small enough to plan many boards every tick */
+    private static final int SOLVER_BEAM_WIDTH = 32;
+
+    /** Games */
+    private final Controller[] games;
+    /** Revision of every game which is currently drawn in frame image */
+    private final int[] drawnRevisions;
+    /** Replay played by every board, null for bots */
+    private final Replay[] replays;
+    /** Next tick of replay played by every board */
+    private final int[] replayTicks;
+    /** Plan of every solver bot, null for other boards and before first plan */
+    private final Autoplay[] plans;
+    /** True for boards played by solver bots */
+    private final boolean[] solverBots;
+    /** Solver shared by solver bots, it plans on event dispatch thread */
+    private final PuzzleSolver solver = new PuzzleSolver(BOARD_WIDTH, BOARD_HEIGHT, SOLVER_BEAM_WIDTH, 1);
+    /** Board copied from game planned by solver */
+    private final Model.Shape[] solverBoard = new Model.Shape[BOARD_WIDTH * BOARD_HEIGHT];
+    /** Number of board columns */
+    private final int columns;
+    /** Number of board rows */
+    private final int rows;
+    /** Random generator used by bots */
+    private final Random random = new Random();
+    /** Logic timer, every tick each replay plays one tick, each bot makes a move and each game makes gameAction */
+    private final Timer tickTimer;
+    /** Frame timer, every frame changed boards are drawn into frame image */
+    private final Timer frameTimer;
+    /** Frame image */
+    private BufferedImage frame;
+    /** Tile atlas shared by all boards */
+    private TileAtlas atlas;
+
+    /**
+     * Constructor, creates games and arranges them in almost square grid
+     * @param numGames number of games, at least one board is created for every replay
+     * @param replays replays played by first boards, they start again when they end
+     */
+    public TournamentPanel(int numGames, List<Replay> replays)
+    {
+        numGames = Math.max(numGames, replays.size());
+        this.games = new Controller[numGames];
+        this.drawnRevisions = new int[numGames];
+        this.replays = new Replay[numGames];
+        this.replayTicks = new int[numGames];
+        this.plans = new Autoplay[numGames];
+        this.solverBots = new boolean[numGames];
+        this.columns = (int) Math.ceil(Math.sqrt(numGames));
+        this.rows = (numGames + columns - 1) / columns;
+        for (int i = 0; i < numGames; ++i)
+        {
+            if (i < replays.size())
+            {
+                this.replays[i] = replays.get(i);
+                games[i] = this.replays[i].newGame(BOARD_WIDTH, BOARD_HEIGHT);
+                continue;
+            }
+            solverBots[i] = (i - replays.size()) % 2 == 0;
+            games[i] = new Controller(new Model(), BOARD_WIDTH, BOARD_HEIGHT);
+            games[i].start();
+        }
+
+        setBackground(Color.black);
+        setPreferredSize(new Dimension(columns * BOARD_WIDTH * 8, rows * BOARD_HEIGHT * 8));
+        tickTimer = new Timer(TICK_DELAY, e -> tick());
+        frameTimer = new Timer(FRAME_DELAY, this);
+    }
+
+    /**
+     * Starts both timers
+     */
+    public void start()
+    {
+        tickTimer.start();
+        frameTimer.start();
+    }
+
+    /**
+     * One logic tick of every game, finished games and replays are restarted
+     */
+    private void tick()
+    {
+        for (int i = 0; i < games.length; ++i)
+        {
+            if (replays[i] != null)
+            {
+                replayTick(i);
+                continue;
+            }
+            Controller game = games[i];
+            if (!game.isStarted())
+            {
+                plans[i] = null;
+                game.setAutoplay(null);
+                game.start();
+                continue;
+            }
+
+            if (solverBots[i])
+            {
+                solverTick(i);
+                continue;
+            }
+            Replay.apply(game, (byte) random.nextInt(Replay.ROTATE_RIGHT + 1));
+            game.gameAction();
+        }
+    }
+
+    /**
+     * Plays next tick of board's replay, replay which has ended starts again in new game
+     * @param i board number
+     */
+    private void replayTick(int i)
+    {
+        if (replayTicks[i] == replays[i].getTicks())
+        {
+            games[i] = replays[i].newGame(BOARD_WIDTH, BOARD_HEIGHT);
+            replayTicks[i] = 0;
+            drawnRevisions[i] = -1;
+            return;
+        }
+        replays[i].playTick(games[i], replayTicks[i]++);
+    }
+
+    /**
+     * Tick of solver bot - when its plan is finished, next pieces are planned
+     * as soon as new piece is created, plan is played by game's autoplay
+     * @param i board number
+     */
+    private void solverTick(int i)
+    {
+        Controller game = games[i];
+        game.gameAction();
+        if (!game.isStarted() || game.isFallingFinished() || (plans[i] != null && !plans[i].isFinished()))
+        {
+            return;
+        }
+        game.copyBoard(solverBoard);
+        plans[i] = new Autoplay(solver.solve(solverBoard, game.upcomingPieces(SOLVER_PIECES),
+                PuzzleSolver.Goal.MAX_LINES));
+        game.setAutoplay(plans[i]);
+        plans[i].tick(game);
+    }
+
+    /**
+     * Frame timer action - draws changed boards into frame image,
+     * panel is repainted only if at least one board has changed
+     * @param e action event
+     */
+    @Override
+    public void actionPerformed(ActionEvent e)
+    {
+        if (getWidth() == 0 || getHeight() == 0)
+        {
+            return;
+        }
+
+        boolean redrawAll = prepareFrame();
+        int cellWidth = getWidth() / columns;
+        int cellHeight = getHeight() / rows;
+        int boardWidth = BOARD_WIDTH * atlas.getSquareWidth();
+        int boardHeight = BOARD_HEIGHT * atlas.getSquareHeight();
+        boolean changed = redrawAll;
+
+        Graphics g = frame.getGraphics();
+        for (int i = 0; i < games.length; ++i)
+        {
+            int revision = games[i].getRevision();
+            if (!redrawAll && revision == drawnRevisions[i])
+            {
+                continue;
+            }
+            int left = (i % columns) * cellWidth + (cellWidth - boardWidth) / 2;
+            int top = (i / columns) * cellHeight + (cellHeight - boardHeight) / 2;
+            games[i].paint(g, atlas, left, top);
+            drawnRevisions[i] = revision;
+            changed = true;
+        }
+        g.dispose();
+
+        if (changed)
+        {
+            repaint();
+        }
+    }
+
+    /**
+     * Creates frame image and tile atlas if panel size has changed
+     * @return true if all boards have to be drawn again
+     */
+    private boolean prepareFrame()
+    {
+        int squareSize = Math.max(2, Math.min(getWidth() / columns / BOARD_WIDTH,
+                getHeight() / rows / BOARD_HEIGHT));
+        if (frame != null && frame.getWidth() == getWidth() && frame.getHeight() == getHeight()
+                && atlas.hasSize(squareSize, squareSize))
+        {
+            return false;
+        }
+
+        frame = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_RGB);
+        atlas = new TileAtlas(squareSize, squareSize);
+        return true;
+    }
+
+    /**
+     * Drawing - frame image is copied in one pass
+     * @param g Graphics object
+     */
+    @Override
+    protected void paintComponent(Graphics g)
+    {
+        super.paintComponent(g);
+        if (frame != null)
+        {
+            g.drawImage(frame, 0, 0, null);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reader of training file written by TrainingRecorder
+ * file is memory-mapped and reader is a cursor over its records,
+ * values are read directly from mapped columns, nothing is copied
+ * <pre>
+ * TrainingReader reader = TrainingReader.open(file);
+ * while (reader.next())
+ * {
+ *     use reader.piece(), reader.square(x, y), reader.finalScore(), ...
+ * }
+ * </pre>
+ */
+public class TrainingReader
+{
+    /** Mapped file */
+    private final MappedByteBuffer map;
+    /** Number of records */
+    private final int count;
+    /** Board width (in squares) */
+    private final int boardWidth;
+    /** Board height (in squares) */
+    private final int boardHeight;
+    /** Size of packed board */
+    private final int boardBytes;
+    /** Offset of piece column */
+    private final int pieceColumn;
+    /** Offset of rotation column */
+    private final int rotationColumn;
+    /** Offset of x column */
+    private final int xColumn;
+    /** Offset of y column */
+    private final int yColumn;
+    /** Offset of lines column */
+    private final int linesColumn;
+    /** Offset of final score column */
+    private final int scoreColumn;
+    /** Index of current record, -1 before first next() */
+    private int index = -1;
+
+    /**
+     * Constructor
+     * @param map mapped file
+     */
+    private TrainingReader(MappedByteBuffer map)
+    {
+        this.map = map;
+        int capacity = map.getInt(4);
+        this.count = map.getInt(TrainingRecorder.COUNT_OFFSET);
+        this.boardWidth = map.getInt(12);
+        this.boardHeight = map.getInt(16);
+        this.boardBytes = map.getInt(20);
+        this.pieceColumn = TrainingRecorder.byteColumn(TrainingRecorder.PIECE_COLUMN, capacity, boardBytes);
+        this.rotationColumn = TrainingRecorder.byteColumn(TrainingRecorder.ROTATION_COLUMN, capacity, boardBytes);
+        this.xColumn = TrainingRecorder.byteColumn(TrainingRecorder.X_COLUMN, capacity, boardBytes);
+        this.yColumn = TrainingRecorder.byteColumn(TrainingRecorder.Y_COLUMN, capacity, boardBytes);
+        this.linesColumn = TrainingRecorder.byteColumn(TrainingRecorder.LINES_COLUMN, capacity, boardBytes);
+        this.scoreColumn = TrainingRecorder.scoreColumn(capacity, boardBytes);
+    }
+
+    /**
+     * Maps training file
+     * @param file training file
+     * @return reader positioned before first record
+     * @throws IOException if file cannot be mapped or it is not a training file
+     */
+    public static TrainingReader open(Path file) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (map.getInt(0) != TrainingRecorder.MAGIC)
+            {
+                throw new IOException("Not a training file: " + file);
+            }
+            return new TrainingReader(map);
+        }
+    }
+
+    /**
+     * Moves to next record
+     * @return true if there is next record
+     */
+    public boolean next()
+    {
+        if (index + 1 >= count)
+        {
+            return false;
+        }
+        ++index;
+        return true;
+    }
+
+    /**
+     * Number of records getter
+     * @return number of records
+     */
+    public int getCount()
+    {
+        return count;
+    }
+
+    /**
+     * Board width getter
+     * @return board width (in squares)
+     */
+    public int getBoardWidth()
+    {
+        return boardWidth;
+    }
+
+    /**
+     * Board height getter
+     * @return board height (in squares)
+     */
+    public int getBoardHeight()
+    {
+        return boardHeight;
+    }
+
+    /**
+     * Square of board before lock in current record
+     * @param x x coordinate
+     * @param y y coordinate
+     * @return shape at given coordinates
+     */
+    public Model.Shape square(int x, int y)
+    {
+        int bit = 3 * (y * boardWidth + x);
+        int offset = TrainingRecorder.HEADER_SIZE + index * boardBytes + bit / 8;
+        int bits = map.get(offset) & 0xFF;
+        if (bit % 8 > 5)
+        {
+            bits |= (map.get(offset + 1) & 0xFF) << 8;
+        }
+        return Model.shapeOf((bits >>> (bit % 8)) & 7);
+    }
+
+    /**
+     * Locked piece of current record
+     * @return piece shape
+     */
+    public Model.Shape piece()
+    {
+        return Model.shapeOf(map.get(pieceColumn + index));
+    }
+
+    /**
+     * Rotation of locked piece
+     * @return number of rotations 90 degrees to the right
+     */
+    public int rotation()
+    {
+        return map.get(rotationColumn + index);
+    }
+
+    /**
+     * X coordinate of locked piece
+     * @return x coordinate
+     */
+    public int x()
+    {
+        return map.get(xColumn + index);
+    }
+
+    /**
+     * Y coordinate of locked piece
+     * @return y coordinate
+     */
+    public int y()
+    {
+        return map.get(yColumn + index);
+    }
+
+    /**
+     * Number of lines cleared by locked piece
+     * @return number of lines
+     */
+    public int lines()
+    {
+        return map.get(linesColumn + index);
+    }
+
+    /**
+     * Final score of the game
+     * @return final score, -1 if game did not finish
+     */
+    public int finalScore()
+    {
+        return map.getInt(scoreColumn + index * 4);
+    }
+}
@@ -0,0 +1,374 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Recorder of training data - one fixed-width record for every locked piece:
+ * packed board before lock, piece, its rotation and position, number of lines it cleared and final score
+ * records are written into memory-mapped columnar files (every field is stored in its own column),
+ * file header with number of records is updated once per batch, files are rotated when they are full
+ * and the last file is shrunk to its records when recorder is closed
+ * @see TrainingReader
+ */
+public class TrainingRecorder implements Closeable
+{
+    /** Magic number at the beginning of training file */
+    static final int MAGIC = 0x5454524E; //TTRN
+    /** Header size: magic, capacity, count, board width, board height, board bytes (ints) */
+    static final int HEADER_SIZE = 32;
+    /** Offset of number of records in header */
+    static final int COUNT_OFFSET = 8;
+    /** Final score of records of game which has not finished */
+    static final int NO_SCORE = -1;
+    /** Piece shape ordinal column */
+    static final int PIECE_COLUMN = 0;
+    /** Piece rotation column */
+    static final int ROTATION_COLUMN = 1;
+    /** Piece x coordinate column */
+    static final int X_COLUMN = 2;
+    /** Piece y coordinate column */
+    static final int Y_COLUMN = 3;
+    /** Number of cleared lines column */
+    static final int LINES_COLUMN = 4;
+    /** Number of records after which header is updated */
+    private static final int BATCH_SIZE = 256;
+    /** Prefix of training file names */
+    private static final String FILE_PREFIX = "training-";
+    /** Suffix of training file names */
+    private static final String FILE_SUFFIX = ".col";
+
+    /** Directory with training files */
+    private final Path directory;
+    /** Board width (in squares) */
+    private final int boardWidth;
+    /** Board height (in squares) */
+    private final int boardHeight;
+    /** Size of packed board (in bytes) */
+    private final int boardBytes;
+    /** Number of records in one file */
+    private final int capacity;
+    /** Number of next file, numbering continues after files of previous recordings */
+    private int fileNumber;
+    /** Current file */
+    private Segment current;
+    /** Full files with records of current game, they stay mapped until game is over */
+    private final List<Segment> unfinished = new ArrayList<>();
+    /** File with first record of current game */
+    private Segment gameStart;
+    /** Index of first record of current game in that file */
+    private int gameStartIndex;
+
+    /**
+     * Constructor - creates first file, after files already recorded in the directory
+     * @param directory output directory
+     * @param boardWidth board width (in squares)
+     * @param boardHeight board height (in squares)
+     * @param maxFileSize maximal file size (in bytes), file is rotated when it's full
+     * @throws IOException if file cannot be created
+     */
+    public TrainingRecorder(Path directory, int boardWidth, int boardHeight, long maxFileSize) throws IOException
+    {
+        Files.createDirectories(directory);
+        this.directory = directory;
+        this.boardWidth = boardWidth;
+        this.boardHeight = boardHeight;
+        this.boardBytes = BoardPacker.packedSize(boardWidth * boardHeight);
+        this.fileNumber = nextFileNumber(directory);
+        this.capacity = (int) Math.min(Integer.MAX_VALUE / recordSize(boardBytes),
+                (maxFileSize - HEADER_SIZE) / recordSize(boardBytes));
+        if (capacity <= 0)
+        {
+            throw new IllegalArgumentException("File size is too small: " + maxFileSize);
+        }
+        this.current = openSegment();
+        this.gameStart = current;
+    }
+
+    /**
+     * Called when piece is locked, before it becomes a part of the board
+     * @param board board before lock
+     * @param piece locked piece
+     * @param x piece x coordinate
+     * @param y piece y coordinate
+     */
+    public void pieceLocked(Model.Shape[] board, Model piece, int x, int y)
+    {
+        if (current.count == capacity)
+        {
+            rotate();
+        }
+        Segment segment = current;
+        int index = segment.count;
+        MappedByteBuffer map = segment.map;
+
+        map.position(HEADER_SIZE + index * boardBytes);
+        BoardPacker.pack(board, map);
+        map.put(byteColumn(PIECE_COLUMN) + index, (byte) piece.getPieceShape().ordinal());
+        map.put(byteColumn(ROTATION_COLUMN) + index, (byte) piece.getRotation());
+        map.put(byteColumn(X_COLUMN) + index, (byte) x);
+        map.put(byteColumn(Y_COLUMN) + index, (byte) y);
+        map.put(byteColumn(LINES_COLUMN) + index, (byte) 0);
+        map.putInt(scoreColumn(capacity, boardBytes) + index * 4, NO_SCORE);
+
+        segment.count = index + 1;
+        if (segment.count % BATCH_SIZE == 0)
+        {
+            map.putInt(COUNT_OFFSET, segment.count);
+        }
+    }
+
+    /**
+     * Called when full lines are removed, they are attributed to last locked piece
+     * @param lines number of removed lines
+     */
+    public void linesCleared(int lines)
+    {
+        if (current.count > 0)
+        {
+            int index = byteColumn(LINES_COLUMN) + current.count - 1;
+            current.map.put(index, (byte) (current.map.get(index) + lines));
+        }
+    }
+
+    /**
+     * Called when game is over, final score is written into all records of the game
+     * @param score final score
+     */
+    public void gameOver(int score)
+    {
+        for (Segment segment : unfinished)
+        {
+            fillScore(segment, segment == gameStart ? gameStartIndex : 0, score);
+        }
+        fillScore(current, current == gameStart ? gameStartIndex : 0, score);
+        for (Segment segment : unfinished)
+        {
+            closeQuietly(segment);
+        }
+        unfinished.clear();
+        gameStart = current;
+        gameStartIndex = current.count;
+    }
+
+    /**
+     * Writes number of records of current file, shrinks it to its records and closes it
+     * @throws IOException if file cannot be closed
+     */
+    @Override
+    public void close() throws IOException
+    {
+        compact(current);
+        current.map.force();
+        try
+        {
+            current.channel.truncate(HEADER_SIZE + (long) current.count * recordSize(boardBytes));
+        }
+        catch (IOException e)
+        {
+            // some systems do not allow truncating mapped file, compacted file is valid with unused tail too
+            System.err.println("Training file cannot be truncated: " + e.getMessage());
+        }
+        current.channel.close();
+        for (Segment segment : unfinished)
+        {
+            segment.channel.close();
+        }
+    }
+
+    /**
+     * Writes final score into records of game
+     * @param segment file
+     * @param from first record of the game in this file
+     * @param score final score
+     */
+    private void fillScore(Segment segment, int from, int score)
+    {
+        for (int i = from; i < segment.count; ++i)
+        {
+            segment.map.putInt(scoreColumn(capacity, boardBytes) + i * 4, score);
+        }
+    }
+
+    /**
+     * Moves columns of partially filled file right after its records, so that its capacity is number of records,
+     * columns only move towards the beginning of the file, so they are moved in order
+     * @param segment file
+     */
+    private void compact(Segment segment)
+    {
+        int count = segment.count;
+        MappedByteBuffer map = segment.map;
+        byte[] column = new byte[count * 4];
+        for (int i = PIECE_COLUMN; i <= LINES_COLUMN; ++i)
+        {
+            map.position(byteColumn(i));
+            map.get(column, 0, count);
+            map.position(byteColumn(i, count, boardBytes));
+            map.put(column, 0, count);
+        }
+        map.position(scoreColumn(capacity, boardBytes));
+        map.get(column, 0, count * 4);
+        map.position(scoreColumn(count, boardBytes));
+        map.put(column, 0, count * 4);
+        map.putInt(4, count);
+        map.putInt(COUNT_OFFSET, count);
+    }
+
+    /**
+     * Offset of byte column in current files
+     * @param column column number
+     * @return column offset
+     */
+    private int byteColumn(int column)
+    {
+        return byteColumn(column, capacity, boardBytes);
+    }
+
+    /**
+     * Closes finished file, its mapping is released by garbage collector
+     * @param segment file
+     */
+    private static void closeQuietly(Segment segment)
+    {
+        try
+        {
+            segment.channel.close();
+        }
+        catch (IOException e)
+        {
+            System.err.println("Training file cannot be closed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Finishes current file and opens next one,
+     * finished file stays mapped until current game is over
+     */
+    private void rotate()
+    {
+        current.map.putInt(COUNT_OFFSET, current.count);
+        unfinished.add(current);
+        try
+        {
+            current = openSegment();
+        }
+        catch (IOException e)
+        {
+            throw new IllegalStateException("Training file cannot be created", e);
+        }
+    }
+
+    /**
+     * Creates and maps next file
+     * @return new file
+     * @throws IOException if file cannot be created
+     */
+    private Segment openSegment() throws IOException
+    {
+        Path file = directory.resolve(String.format(FILE_PREFIX + "%05d" + FILE_SUFFIX, fileNumber++));
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                HEADER_SIZE + (long) capacity * recordSize(boardBytes));
+        map.putInt(0, MAGIC);
+        map.putInt(4, capacity);
+        map.putInt(COUNT_OFFSET, 0);
+        map.putInt(12, boardWidth);
+        map.putInt(16, boardHeight);
+        map.putInt(20, boardBytes);
+        return new Segment(channel, map);
+    }
+
+    /**
+     * Number following the highest number of training files in directory
+     * @param directory directory with training files
+     * @return number of next file, 0 if there are no training files
+     * @throws IOException if directory cannot be read
+     */
+    private static int nextFileNumber(Path directory) throws IOException
+    {
+        int next = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, FILE_PREFIX + "*" + FILE_SUFFIX))
+        {
+            for (Path file : files)
+            {
+                String name = file.getFileName().toString();
+                try
+                {
+                    int number = Integer.parseInt(name.substring(FILE_PREFIX.length(),
+                            name.length() - FILE_SUFFIX.length()));
+                    next = Math.max(next, number + 1);
+                }
+                catch (NumberFormatException e)
+                {
+                    //not a file written by recorder
+                }
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Size of one record (in bytes)
+     * @param boardBytes size of packed board
+     * @return record size
+     */
+    static int recordSize(int boardBytes)
+    {
+        return boardBytes + 5 + 4;
+    }
+
+    /**
+     * Offset of one of byte columns (piece, rotation, x, y, lines)
+     * @param column column number (PIECE_COLUMN ... LINES_COLUMN)
+     * @param capacity number of records in file
+     * @param boardBytes size of packed board
+     * @return column offset
+     */
+    static int byteColumn(int column, int capacity, int boardBytes)
+    {
+        return HEADER_SIZE + capacity * boardBytes + column * capacity;
+    }
+
+    /**
+     * Offset of final score column (ints)
+     * @param capacity number of records in file
+     * @param boardBytes size of packed board
+     * @return column offset
+     */
+    static int scoreColumn(int capacity, int boardBytes)
+    {
+        return byteColumn(LINES_COLUMN + 1, capacity, boardBytes);
+    }
+
+    /**
+     * One training file
+     */
+    private static final class Segment
+    {
+        /** File channel */
+        private final FileChannel channel;
+        /** Mapped file */
+        private final MappedByteBuffer map;
+        /** Number of records */
+        private int count = 0;
+
+        /**
+         * Constructor
+         * @param channel file channel
+         * @param map mapped file
+         */
+        Segment(FileChannel channel, MappedByteBuffer map)
+        {
+            this.channel = channel;
+            this.map = map;
+        }
+    }
+}